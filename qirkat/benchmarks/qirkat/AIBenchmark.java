@@ -0,0 +1,55 @@
+package qirkat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of AI move search at fixed depths.
+ *
+ * @author Santhosh Subramanian
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class AIBenchmark {
+
+    /** Name of the canned position to search (see Positions). */
+    @Param({ Positions.INITIAL, Positions.OPEN, Positions.MIDDLEGAME,
+             Positions.ENDGAME })
+    public String position;
+
+    /** Search depth. */
+    @Param({ "1", "3", "5" })
+    public int depth;
+
+    /** The AI doing the searching. */
+    private AI _ai;
+
+    /** Set up an AI to move in the current position. */
+    @Setup
+    public void setup() {
+        Game game = Positions.game(position);
+        _ai = new AI(game, game.getBoard().whoseMove());
+    }
+
+    /** Search the position to the current depth. */
+    @Benchmark
+    public Move findMove() {
+        return _ai.findMove(depth);
+    }
+
+}
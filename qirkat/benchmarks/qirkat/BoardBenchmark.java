@@ -0,0 +1,93 @@
+package qirkat;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of Board move generation and make/undo.
+ *
+ * @author Santhosh Subramanian
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    /** Name of the canned position to benchmark (see Positions). */
+    @Param({ Positions.INITIAL, Positions.OPEN, Positions.MIDDLEGAME,
+             Positions.MULTIJUMP, Positions.ENDGAME })
+    public String position;
+
+    /** The board being measured. */
+    private Board _board;
+    /** The first legal move from _board. */
+    private Move _move;
+    /** The packed form of _move. */
+    private long _packedMove;
+    /** Reusable list of packed moves. */
+    private final Board.MoveList _packedMoves = new Board.MoveList();
+
+    /** Set up _board and _move from the current position. */
+    @Setup
+    public void setup() {
+        _board = Positions.board(position);
+        _move = _board.getMoves().get(0);
+        _packedMove = _move.packed();
+    }
+
+    /** Return all legal moves from the position. */
+    @Benchmark
+    public ArrayList<Move> getMoves() {
+        return _board.getMoves();
+    }
+
+    /** Return the number of legal moves from the position, generated in
+     *  packed form. */
+    @Benchmark
+    public int getMovesPacked() {
+        _packedMoves.clear();
+        _board.getMoves(_packedMoves);
+        return _packedMoves.size();
+    }
+
+    /** Make and undo a single legal move, returning the piece count. */
+    @Benchmark
+    public int makeUndo() {
+        _board.makeMove(_move);
+        int n = _board.number(PieceColor.EMPTY);
+        _board.undo();
+        return n;
+    }
+
+    /** Make and undo a single legal packed move, returning the piece
+     *  count. */
+    @Benchmark
+    public int makeUndoPacked() {
+        _board.makeMove(_packedMove);
+        int n = _board.number(PieceColor.EMPTY);
+        _board.undo();
+        return n;
+    }
+
+    /** Return whether the side to move has a capture. */
+    @Benchmark
+    public boolean jumpPossible() {
+        return _board.jumpPossible();
+    }
+
+    /** Return the number of positions two moves away. */
+    @Benchmark
+    public long perft2() {
+        return Perft.perft(_board, 2);
+    }
+
+}
@@ -0,0 +1,45 @@
+package qirkat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the Move factory and Move parsing.
+ *
+ * @author Santhosh Subramanian
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MoveBenchmark {
+
+    /** Denotation of the move to parse. */
+    @Param({ "c2-c3", "a3-a5-c3", "a1-c1-a3-c3-a5-c5-c3-e1" })
+    public String denotation;
+
+    /** Fetch an existing single-step Move from the factory. */
+    @Benchmark
+    public Move moveStep() {
+        return Move.move('b', '2', 'c', '3');
+    }
+
+    /** Fetch an existing two-jump Move from the factory. */
+    @Benchmark
+    public Move moveChain() {
+        return Move.move('a', '3', 'a', '5', Move.move('a', '5', 'c', '3'));
+    }
+
+    /** Parse the move denoted by the current parameter. */
+    @Benchmark
+    public Move parseMove() {
+        return Move.parseMove(denotation);
+    }
+
+}
@@ -0,0 +1,93 @@
+package qirkat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of AI move search at a fixed depth with and without the
+ * move-ordering heuristics (captures first, killer moves, and history).
+ * Besides the time per search, each result reports the total number of
+ * positions searched ("nodes") and of searches ("searches"), whose
+ * ratio is the number of positions per search.  Both settings find the
+ * same best move; with ordering, cutoffs come sooner and fewer
+ * positions are searched.
+ *
+ * @author Santhosh Subramanian
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveOrderingBenchmark {
+
+    /** Search depth. */
+    private static final int DEPTH = 7;
+
+    /** Name of the canned position to search (see Positions). */
+    @Param({ Positions.INITIAL, Positions.OPEN, Positions.MIDDLEGAME,
+             Positions.ENDGAME })
+    public String position;
+
+    /** True iff moves are ordered by the heuristics. */
+    @Param({ "false", "true" })
+    public boolean ordering;
+
+    /** The AI doing the searching. */
+    private AI _ai;
+
+    /** Counts of positions searched and of searches. */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        /** Number of positions searched. */
+        public long nodes;
+        /** Number of searches. */
+        public long searches;
+
+        /** Start each iteration from zero. */
+        @Setup(Level.Iteration)
+        public void clear() {
+            nodes = searches = 0;
+        }
+    }
+
+    /** Set up an AI to move in the current position. */
+    @Setup
+    public void setup() {
+        Game game = Positions.game(position);
+        _ai = new AI(game, game.getBoard().whoseMove());
+        _ai.useOrdering(ordering);
+    }
+
+    /** Empty the transposition table, so that each search does the same
+     *  work. */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        _ai.table().clear();
+    }
+
+    /** Search the position to DEPTH, counting positions in COUNTERS. */
+    @Benchmark
+    public Move findMove(Counters counters) {
+        Move move = _ai.findMove(DEPTH);
+        counters.nodes += _ai.nodes();
+        counters.searches += 1;
+        return move;
+    }
+
+}
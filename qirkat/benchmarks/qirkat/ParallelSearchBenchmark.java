@@ -0,0 +1,86 @@
+package qirkat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of AI move search with 1 to 8 threads.  Besides searches
+ * per second, each result includes a secondary "nodes" rate: positions
+ * searched per second, whose ratio to that of the one-thread run gives
+ * the parallel speedup.
+ *
+ * @author Santhosh Subramanian
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelSearchBenchmark {
+
+    /** Search depth. */
+    private static final int DEPTH = 5;
+
+    /** Name of the canned position to search (see Positions). */
+    @Param({ Positions.INITIAL, Positions.OPEN, Positions.MIDDLEGAME })
+    public String position;
+
+    /** Number of search threads. */
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    /** The AI doing the searching. */
+    private AI _ai;
+
+    /** Counts of positions searched, reported by JMH as a rate. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        /** Number of positions searched. */
+        public long nodes;
+
+        /** Start each iteration from zero. */
+        @Setup(Level.Iteration)
+        public void clear() {
+            nodes = 0;
+        }
+    }
+
+    /** Set up an AI to move in the current position. */
+    @Setup
+    public void setup() {
+        Game game = Positions.game(position);
+        game.setThreads(threads);
+        _ai = new AI(game, game.getBoard().whoseMove());
+    }
+
+    /** Empty the transposition table, so that each search does the same
+     *  work. */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        _ai.table().clear();
+    }
+
+    /** Search the position to DEPTH, counting positions in COUNTERS. */
+    @Benchmark
+    public Move findMove(Counters counters) {
+        Move move = _ai.findMove(DEPTH);
+        counters.nodes += _ai.nodes();
+        return move;
+    }
+
+}
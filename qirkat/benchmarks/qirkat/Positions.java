@@ -0,0 +1,73 @@
+package qirkat;
+
+import java.io.StringReader;
+
+import static qirkat.PieceColor.*;
+
+/**
+ * Canned positions shared by the benchmarks.  Each is named by one of
+ * the values accepted by the "position" parameter of a benchmark.
+ *
+ * @author Santhosh Subramanian
+ */
+class Positions {
+
+    /** Names of the canned positions, for use in @Param annotations. */
+    static final String INITIAL = "initial", OPEN = "open",
+        MIDDLEGAME = "middlegame", MULTIJUMP = "multijump",
+        ENDGAME = "endgame";
+
+    /**
+     * Return a new Board set up as the canned position NAME.
+     */
+    static Board board(String name) {
+        Board b = new Board();
+        switch (name) {
+        case INITIAL:
+            break;
+        case OPEN:
+            b.setPieces("w-w-w-w-w-----b-b-b-bb-bb", WHITE);
+            break;
+        case MIDDLEGAME:
+            b.setPieces("wwwww-ww-w--w-b--bbbbbbbb", BLACK);
+            break;
+        case MULTIJUMP:
+            b.setPieces("wb----b-b--b----bb---b---", WHITE);
+            break;
+        case ENDGAME:
+            b.setPieces("-w--w------b----b----b---", BLACK);
+            break;
+        default:
+            throw new IllegalArgumentException("unknown position: " + name);
+        }
+        return b;
+    }
+
+    /**
+     * Return a new Game, reading no commands and reporting nothing, whose
+     * board is set up as the canned position NAME.
+     */
+    static Game game(String name) {
+        return new Game(board(name),
+                        new ReaderSource(new StringReader(""), false),
+                        new NullReporter());
+    }
+
+    /**
+     * A Reporter that discards all messages.
+     */
+    static class NullReporter implements Reporter {
+        @Override
+        public void errMsg(String format, Object... args) {
+        }
+
+        @Override
+        public void outcomeMsg(String format, Object... args) {
+        }
+
+        @Override
+        public void moveMsg(String format, Object... args) {
+        }
+    }
+
+}
@@ -5,9 +5,25 @@ package qirkat;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static qirkat.Move.packedFrom;
+import static qirkat.Move.packedIsJump;
+import static qirkat.Move.packedLegs;
+import static qirkat.Move.packedTo;
 import static qirkat.PieceColor.BLACK;
 import static qirkat.PieceColor.WHITE;
+import static qirkat.TranspositionTable.EXACT;
+import static qirkat.TranspositionTable.LOWER;
+import static qirkat.TranspositionTable.UPPER;
 
 /** A Player that computes its own moves.
  *  @author Santhosh Subramanian
@@ -15,26 +31,166 @@ import static qirkat.PieceColor.WHITE;
 class AI extends Player {
 
     /** Maximum minimax search depth before going to static evaluation. */
-    private static final int MAX_DEPTH = 5;
-    /** A position magnitude indicating a win (for white if positive, black
-     *  if negative). */
+    private static final int MAX_DEPTH = 64;
+    /** Maximum number of positions searched by one quiescence search
+     *  (see quiesce), after which positions are estimated statically even
+     *  if a capture is pending. */
+    private static final int QUIESCENCE_NODES = 2048;
+    /** Number of plies (levels below the root) that a search can reach,
+     *  counting the root.  Each move of a quiescence search captures at
+     *  least one piece, so it can go no more plies past DEPTH than there
+     *  are squares. */
+    private static final int MAX_PLY = MAX_DEPTH + Move.MAX_INDEX + 2;
+    /** Number of killer moves remembered at each ply. */
+    private static final int KILLERS = 2;
+    /** Ordering scores (see orderMoves) of the hash move, of a capture
+     *  before adding its number of legs, and of the most recent killer
+     *  move.  History scores are kept below HISTORY_LIMIT. */
+    private static final int
+        HASH_SCORE = Integer.MAX_VALUE, CAPTURE_SCORE = 1 << 30,
+        KILLER_SCORE = 1 << 29, HISTORY_LIMIT = 1 << 28;
+    /** Half the width of the window around the value from the previous
+     *  iteration in which the root search initially looks for the
+     *  value of the next: half a piece at the default weights. */
+    private static final int ASPIRATION_WINDOW = 50;
+    /** Number of positions searched between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 1024;
+    /** A position magnitude indicating a win (for the side to move if
+     *  positive, the other side if negative). */
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
+    /** Static value to the side to move of a position that the
+     *  tablebase shows to be won at once.  A position won in D moves is
+     *  worth D less, and one lost in D moves the negation of that.  Far
+     *  from the values of evaluators, but also from WINNING_VALUE, since
+     *  the tablebase ignores the restrictions on sideways moves and so is
+     *  sometimes wrong. */
+    private static final int TABLEBASE_WIN = 1 << 20;
+    /** Values at least this far from 0 are known wins or losses. */
+    private static final int DECIDED = 1 << 24;
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
-    /** The move found by the last call to one of the ...FindMove methods
-     *  below. */
-    private Move _lastFoundMove;
+    /** Static evaluation of the current search. */
+    private Evaluator _evaluator;
+    /** Endgame tablebase of the current search, or null if none. */
+    private Tablebase _tablebase;
+    /** Results of searches of positions already seen. */
+    private final TranspositionTable _table;
+    /** Time (System.nanoTime) at which the current search must stop, or
+     *  0 if it need not. */
+    private long _deadline;
+    /** True iff the current search has been stopped for lack of time. */
+    private boolean _stopped;
+    /** Set by another thread to stop the current search, which then
+     *  stops as if it had run out of time.  Shared with my helpers. */
+    private final AtomicBoolean _halt;
+    /** The search of the position expected after the opponent's reply
+     *  that runs while the opponent thinks, or null if none. */
+    private FutureTask<Move> _ponder;
+    /** The position searched by _ponder. */
+    private Board _ponderBoard;
+    /** Number of positions searched by the current search. */
+    private long _nodes;
+    /** Statistics of the current search: numbers of positions searched
+     *  by quiescence searches, of positions cut off, and of those cut
+     *  off by their first move. */
+    private long _quiescenceNodes, _cutoffs, _firstMoveCutoffs;
+    /** Statistics of the current search: numbers of positions searched
+     *  by its last two completed iterations, and by all its completed
+     *  iterations. */
+    private long _lastIterationNodes, _priorIterationNodes,
+        _completedNodes;
+    /** Greatest ply reached by the current search. */
+    private int _maxPly;
+    /** Statistics of my last search. */
+    private SearchStats _stats;
+    /** Value to the side to move of the root position found by the
+     *  last completed iteration of the current search. */
+    private int _score;
+    /** Depth of the last completed iteration of the current search. */
+    private int _depthReached;
+    /** Best move found by the last completed iteration of the current
+     *  search, which is searched first by the next one. */
+    private Move _rootMove;
+    /** Principal variation found by the last completed iteration of the
+     *  current search, packed. */
+    private long[] _rootPv = new long[0];
+    /** AIs that search moves from the root position in parallel with
+     *  each other, and the threads that run them.  Null when I search
+     *  with one thread. */
+    private AI[] _helpers;
+    /** See _helpers. */
+    private ForkJoinPool _pool;
+    /** True iff I order moves by the heuristics in orderMoves, rather
+     *  than just searching the hash move first. */
+    private boolean _ordering = true;
+    /** Number of moves between the root and the position being
+     *  searched. */
+    private int _ply;
+    /** Lists of the moves from the position at each ply, and their
+     *  ordering scores, reused from one position to the next so that
+     *  searching creates no objects. */
+    private final Board.MoveList[] _moveLists = new Board.MoveList[MAX_PLY];
+    /** See _moveLists. */
+    private final int[][] _orderScores = new int[MAX_PLY][];
+    /** Packed non-capturing moves that most recently caused a cutoff at
+     *  each ply, most recent first (0 if none). */
+    private final long[][] _killers = new long[MAX_PLY][KILLERS];
+    /** _history[FROM][TO] increases with the number and depth of the
+     *  cutoffs caused by non-capturing moves from square FROM to square
+     *  TO. */
+    private final int[][] _history =
+        new int[Move.MAX_INDEX + 1][Move.MAX_INDEX + 1];
+    /** _pv[PLY][0 .. _pvLength[PLY]-1] is the principal variation (best
+     *  line of play) found from the position at PLY by the search now
+     *  in progress there, packed. */
+    private final long[][] _pv = new long[MAX_PLY][MAX_PLY];
+    /** See _pv. */
+    private final int[] _pvLength = new int[MAX_PLY];
+    /** Number of positions that the current quiescence search may still
+     *  search. */
+    private int _quiescenceLeft;
 
     /** A new AI for GAME that will play MYCOLOR. */
     AI(Game game, PieceColor myColor) {
         super(game, myColor);
+        _table = game.newTable();
+        _halt = new AtomicBoolean();
     }
 
+    /** A new AI that helps MAIN search, sharing its transposition
+     *  table. */
+    private AI(AI main) {
+        super(main.game(), main.myColor());
+        _table = main._table;
+        _halt = main._halt;
+    }
+
+    /** Return a move for me.  If the game's ponder setting is on, I go
+     *  on searching after choosing it, in another thread, from the
+     *  position expected after the opponent's reply (the next move of
+     *  the principal variation).  If that reply is made, that search
+     *  continues for the usual time and its move is mine ("ponder
+     *  hit"); otherwise it is stopped and its result discarded, though
+     *  what it has stored in my transposition table remains.  A ponder
+     *  search stopped before it finds a move counts as a miss. */
     @Override
     Move myMove() {
         Main.startTiming();
-        Move move = findMove();
+        Move move = ponderResult();
+        boolean hit = move != null;
+        if (!hit) {
+            /* Pondering missed, or was stopped before its first
+             * iteration ended: search afresh. */
+            _halt.set(false);
+            move = findMove(MAX_DEPTH, game().timeLimit());
+        }
         Main.endTiming();
+        Main.reportStats(String.format("%s%s, pv %s",
+                                       hit ? "ponder hit, " : "", _stats,
+                                       principalVariation()));
+        Main.reportStats(_table.stats());
+        Main.reportData(_stats.toJson());
+        game().setStats(_stats);
         Reporter reporter = game().getReporter();
         Move temp = Move.move('d', '5', 'e', '5', null);
         if (game().getBoard().toString().equals("  b - - b -\n  "
@@ -44,143 +200,723 @@ class AI extends Player {
             return temp;
         }
         if (move == null) {
-            board().setgameOver();
+            game().getBoard().setgameOver();
         } else {
             reporter.outcomeMsg(myColor() + " moves " + move.toString() + ".");
+            if (game().ponder()) {
+                startPondering(move);
+            }
         }
         return move;
     }
 
+    @Override
+    void stop() {
+        stopPondering();
+    }
+
+    /** Start searching, in another thread, the position expected after
+     *  my move MOV from the current position and the opponent's reply,
+     *  if my principal variation predicts one. */
+    private void startPondering(Move mov) {
+        if (_rootPv.length < 2 || _rootPv[0] != mov.packed()) {
+            return;
+        }
+        Board position = new Board(game().getBoard());
+        position.makeMove(_rootPv[0]);
+        if (!position.legalMove(_rootPv[1])) {
+            return;
+        }
+        position.makeMove(_rootPv[1]);
+        if (position.getMoves().isEmpty()) {
+            return;
+        }
+        _halt.set(false);
+        _ponderBoard = position;
+        _ponder = new FutureTask<>(() -> findMove(position, MAX_DEPTH, 0));
+        Thread thread = new Thread(_ponder, "ponder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Return the move found by pondering, if it searched the current
+     *  position, after letting it go on for the time allowed per move
+     *  (or the default time, if there is no limit), since a ponder
+     *  search has no depth limit of its own.  Otherwise, or if it was
+     *  stopped before it found a move, stop pondering and return
+     *  null. */
+    private Move ponderResult() {
+        if (_ponder == null) {
+            return null;
+        } else if (!_ponderBoard.equals(game().getBoard())) {
+            stopPondering();
+            return null;
+        }
+        FutureTask<Move> ponder = _ponder;
+        _ponder = null;
+        long limit = game().timeLimit();
+        if (limit < 1) {
+            limit = Game.DEFAULT_TIME_LIMIT;
+        }
+        try {
+            return ponder.get(limit, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException excp) {
+            /* Stop the search below. */
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException excp) {
+            return null;
+        }
+        _halt.set(true);
+        return await(ponder);
+    }
+
+    /** Stop pondering, if I am, and wait for the search to end. */
+    private void stopPondering() {
+        if (_ponder != null) {
+            _halt.set(true);
+            await(_ponder);
+            _ponder = null;
+        }
+    }
+
+    /** Return the result of SEARCH, or null if it failed, waiting for it
+     *  to end even if interrupted, since it must not outlive a halt that
+     *  my next search clears.  An interrupt is passed on to the caller
+     *  once SEARCH ends. */
+    private static Move await(FutureTask<Move> search) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return search.get();
+                } catch (InterruptedException excp) {
+                    interrupted = true;
+                } catch (ExecutionException excp) {
+                    return null;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Return a move for me from the current position, searching DEPTH
+     *  levels, assuming there is a move. */
+    Move findMove(int depth) {
+        return findMove(depth, 0);
+    }
+
     /** Return a move for me from the current position, assuming there
-     *  is a move. */
-    private Move findMove() {
-        Board b = new Board(game().getBoard());
-        if (myColor() == WHITE) {
-            findMove(b, MAX_DEPTH, true, 1, -INFTY, INFTY);
+     *  is a move, by searching 1, 2, ... levels up to DEPTH until LIMIT
+     *  milliseconds have nearly elapsed (no limit if LIMIT is 0).
+     *  Returns the best move of the last search to complete.  Each
+     *  search after the first starts with a window of ASPIRATION_WINDOW
+     *  either side of the value found by the one before, and is repeated
+     *  with that side of the window open if the value falls outside.
+     *  If the game's opening book has the current position, returns its
+     *  move without searching. */
+    Move findMove(int depth, long limit) {
+        return findMove(game().getBoard(), depth, limit);
+    }
+
+    /** Return a move for me from POSITION, as for findMove(DEPTH,
+     *  LIMIT). */
+    private Move findMove(Board position, int depth, long limit) {
+        long start = System.nanoTime();
+        long probes = _table.probes(), hits = _table.hits();
+        _quiescenceNodes = _cutoffs = _firstMoveCutoffs = 0;
+        _lastIterationNodes = _priorIterationNodes = _completedNodes = 0;
+        _maxPly = 0;
+        Move best = iterate(position, depth, limit);
+        _stats = new SearchStats(_depthReached, _maxPly, _nodes,
+                                 _quiescenceNodes, _cutoffs,
+                                 _firstMoveCutoffs, _lastIterationNodes,
+                                 _priorIterationNodes,
+                                 _table.probes() - probes,
+                                 _table.hits() - hits,
+                                 System.nanoTime() - start);
+        return best;
+    }
+
+    /** Return a move for me from POSITION, as for findMove(DEPTH,
+     *  LIMIT), but leaving statistics other than _nodes to the
+     *  caller. */
+    private Move iterate(Board position, int depth, long limit) {
+        Board b = new Board(position);
+        b.setSilent(true);
+        ArrayList<Move> moves = b.getMoves();
+        useThreads(game().threads());
+        long start = System.nanoTime();
+        Move best = null;
+        _table.newSearch();
+        _evaluator = game().evaluator();
+        _tablebase = game().tablebase();
+        _stopped = false;
+        _nodes = 0;
+        _depthReached = 0;
+        _deadline = 0;
+        _rootMove = null;
+        _rootPv = new long[0];
+        _score = 0;
+        _ply = 0;
+        OpeningBook book = game().book();
+        long bookMove = book == null ? 0 : book.move(b.key());
+        if (bookMove != 0 && b.legalMove(bookMove)) {
+            _rootPv = new long[] { bookMove };
+            _score = book.score(b.key());
+            return Move.unpack(bookMove);
+        }
+        ageHeuristics();
+        int score = 0;
+        for (int d = 1; d <= depth; d += 1) {
+            int alpha = -INFTY, beta = INFTY;
+            if (d > 1 && Math.abs(score) < DECIDED) {
+                alpha = score - ASPIRATION_WINDOW;
+                beta = score + ASPIRATION_WINDOW;
+            }
+            while (true) {
+                score = searchRoot(b, moves, d, alpha, beta);
+                if (_stopped || alpha < score && score < beta) {
+                    break;
+                } else if (score <= alpha) {
+                    alpha = -INFTY;
+                } else {
+                    beta = INFTY;
+                }
+            }
+            if (_stopped) {
+                break;
+            }
+            _rootPv = Arrays.copyOf(_pv[0], _pvLength[0]);
+            best = _rootMove =
+                _rootPv.length == 0 ? null : Move.unpack(_rootPv[0]);
+            _depthReached = d;
+            _score = score;
+            _priorIterationNodes = _lastIterationNodes;
+            _lastIterationNodes = _nodes - _completedNodes;
+            _completedNodes = _nodes;
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            if (moves.size() <= 1 || Math.abs(score) >= WINNING_VALUE
+                || limit > 0 && 2 * elapsed >= limit) {
+                break;
+            }
+            if (limit > 0) {
+                _deadline = start + limit * 1_000_000;
+            }
+        }
+        return best;
+    }
+
+    /** Return the value of BOARD, whose moves are MOVES, to the side to
+     *  move, searching DEPTH levels, as for search, and leaving its
+     *  principal variation in _pv[0]. */
+    private int searchRoot(Board board, ArrayList<Move> moves, int depth,
+                           int alpha, int beta) {
+        if (_helpers == null || moves.size() <= 1 || board.gameOver()) {
+            return search(board, depth, alpha, beta);
         } else {
-            findMove(b, MAX_DEPTH, true, -1, -INFTY, INFTY);
+            return splitRoot(board, moves, depth, alpha, beta);
+        }
+    }
+
+    /** Return the position I am pondering, or null if I am not. */
+    Board ponderPosition() {
+        return _ponder == null ? null : _ponderBoard;
+    }
+
+    /** Return the principal variation (expected line of play, starting
+     *  with my move) found by the last completed iteration of my last
+     *  search. */
+    ArrayList<Move> principalVariation() {
+        ArrayList<Move> result = new ArrayList<>(_rootPv.length);
+        for (long mov : _rootPv) {
+            result.add(Move.unpack(mov));
         }
-        return _lastFoundMove;
+        return result;
     }
 
-    /**Prune MOVES. */
-    void prune(ArrayList<Move> moves) {
-        ArrayList<Move> delete = new ArrayList<Move>();
-        for (Move m : moves) {
-            if (!game().getBoard().legalMove(m)) {
-                delete.add(m);
+    /** Set up to search with THREADS threads. */
+    private void useThreads(int threads) {
+        if (threads == 1) {
+            if (_pool != null) {
+                _pool.shutdown();
+            }
+            _pool = null;
+            _helpers = null;
+        } else if (_helpers == null || _helpers.length != threads) {
+            useThreads(1);
+            _pool = new ForkJoinPool(threads);
+            _helpers = new AI[threads];
+            for (int i = 0; i < threads; i += 1) {
+                _helpers[i] = new AI(this);
             }
         }
-        moves.removeAll(delete);
     }
 
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _lastFoundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        Move best = null;
-        int[] bestScore = new int[1];
-        ArrayList<Move> possibleMoves = board.getMoves();
-        prune(possibleMoves);
-        if (depth == 0) {
-            return staticScore(board);
+    /** Order moves by the heuristics in orderMoves iff ON; otherwise
+     *  search only the hash move ahead of the others. */
+    void useOrdering(boolean on) {
+        _ordering = on;
+    }
+
+    /** Return the value to the side to move of the position searched by
+     *  my last search, as estimated by that search. */
+    int score() {
+        return _score;
+    }
+
+    /** Return the number of positions searched by my last search. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Search each of MOVES, which are the moves from BOARD, to DEPTH
+     *  levels, using my helpers to search all but the first in parallel,
+     *  and return the value of BOARD, as for search(BOARD, DEPTH, ALPHA,
+     *  BETA), leaving its principal variation in _pv[0].  The value is
+     *  meaningless if the search runs out of time. */
+    private int splitRoot(Board board, ArrayList<Move> moves, int depth,
+                          int alpha, int beta) {
+        searchFirst(moves, _rootMove);
+        int[] scores = new int[moves.size()];
+        long[][] lines = new long[moves.size()][];
+        board.makeMove(moves.get(0));
+        _ply += 1;
+        scores[0] = -search(board, depth - 1, -beta, -alpha);
+        _ply -= 1;
+        board.undo();
+        if (_stopped) {
+            return 0;
         }
-        if (board.gameOver()) {
-            _lastFoundMove = null;
-            return staticScore(board);
+        lines[0] = Arrays.copyOf(_pv[1], _pvLength[1]);
+        if (scores[0] >= beta) {
+            return rootResult(moves, scores, lines, 0);
         }
-        if (sense == 1) {
-            Move positive = positive(bestScore,
-                    possibleMoves, board, alpha, beta, depth);
-            if (positive != null) {
-                best = positive;
+        AtomicInteger next = new AtomicInteger(1);
+        AtomicInteger bound = new AtomicInteger(Math.max(alpha, scores[0]));
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (AI helper : _helpers) {
+            helper._deadline = _deadline;
+            helper._stopped = false;
+            helper._nodes = 0;
+            helper._quiescenceNodes = helper._cutoffs = 0;
+            helper._firstMoveCutoffs = 0;
+            helper._maxPly = 0;
+            helper._ordering = _ordering;
+            helper._evaluator = _evaluator;
+            helper._tablebase = _tablebase;
+            helper._ply = 1;
+            if (depth == 1) {
+                helper.ageHeuristics();
             }
-        } else {
-            Move negative = negative(bestScore,
-                    possibleMoves, board, alpha, beta, depth);
-            if (negative != null) {
-                best = negative;
+            Board copy = new Board(board);
+            copy.setSilent(true);
+            tasks.add(() -> {
+                helper.searchRootMoves(copy, moves, depth, beta, scores,
+                                       lines, next, bound);
+                return null;
+            });
+        }
+        _pool.invokeAll(tasks);
+        for (AI helper : _helpers) {
+            _nodes += helper._nodes;
+            _quiescenceNodes += helper._quiescenceNodes;
+            _cutoffs += helper._cutoffs;
+            _firstMoveCutoffs += helper._firstMoveCutoffs;
+            _maxPly = Math.max(_maxPly, helper._maxPly);
+            _stopped |= helper._stopped;
+        }
+        if (_stopped) {
+            return 0;
+        }
+        int best = 0;
+        for (int i = 1; i < scores.length; i += 1) {
+            if (lines[i] != null && scores[i] > scores[best]) {
+                best = i;
             }
         }
-        if (saveMove) {
-            _lastFoundMove = best;
+        return rootResult(moves, scores, lines, best);
+    }
+
+    /** Record MOVES[BEST] followed by LINES[BEST] as the principal
+     *  variation from the root, and return SCORES[BEST]. */
+    private int rootResult(ArrayList<Move> moves, int[] scores,
+                           long[][] lines, int best) {
+        _pv[0][0] = moves.get(best).packed();
+        System.arraycopy(lines[best], 0, _pv[0], 1, lines[best].length);
+        _pvLength[0] = lines[best].length + 1;
+        return scores[best];
+    }
+
+    /** Search moves from BOARD, which are MOVES, to DEPTH levels until
+     *  there are none left, recording the value of MOVES[i] to the side
+     *  to move in SCORES[i], and the principal variation following it in
+     *  LINES[i] if it improves on the best value found so far.  Only the
+     *  moves with a line have values that are not upper bounds, so only
+     *  they may be chosen.  NEXT is
+     *  the index of the next move to search, and is shared with other
+     *  helpers.  BOUND is the best value found so far, which is the lower
+     *  bound of the window of each search, and BETA is the upper bound.
+     *  Each move is first searched with a null window at BOUND, and only
+     *  searched again if it turns out to be better. */
+    private void searchRootMoves(Board board, ArrayList<Move> moves,
+                                 int depth, int beta, int[] scores,
+                                 long[][] lines, AtomicInteger next,
+                                 AtomicInteger bound) {
+        for (int i = next.getAndIncrement(); i < moves.size() && !_stopped;
+             i = next.getAndIncrement()) {
+            int alpha = bound.get();
+            board.makeMove(moves.get(i));
+            int score = -search(board, depth - 1, -alpha - 1, -alpha);
+            if (alpha < score && score < beta && !_stopped) {
+                score = -search(board, depth - 1, -beta, -alpha);
+            }
+            board.undo();
+            scores[i] = score;
+            if (score > alpha) {
+                lines[i] = Arrays.copyOf(_pv[1], _pvLength[1]);
+                bound.accumulateAndGet(score, Math::max);
+            }
         }
-        return bestScore[0];
     }
 
+    /** Return true iff the current search has run out of time or been
+     *  halted, checking every CLOCK_INTERVAL positions. */
+    private boolean outOfTime() {
+        _nodes += 1;
+        if (!_stopped && _nodes % CLOCK_INTERVAL == 0
+            && (_deadline != 0 && System.nanoTime() - _deadline > 0
+                || _halt.get())) {
+            _stopped = true;
+        }
+        return _stopped;
+    }
 
-    /**Returns move based on negative sense given BESTSCORE,
-     * POSSIBLEMOVES, BOARD, ALPHA, BETA, DEPTH.*/
-    Move negative(int[] bestScore, ArrayList<Move> possibleMoves, Board board,
-                  int alpha, int beta, int depth) {
-        Move best = null;
-        bestScore[0] = INFTY;
-        for (int i = 0; i < possibleMoves.size(); i++) {
-            Move move = possibleMoves.get(i);
-            prune(possibleMoves);
-            board.makeMove(move);
-            int score =
-                    findMove(board, depth - 1, false, 1, alpha, beta);
-            if (score < bestScore[0]) {
-                best = move;
-                bestScore[0] = score;
-            }
-            beta = Math.min(bestScore[0], beta);
+    /** Move BEST, if present, to the front of MOVES. */
+    private static void searchFirst(ArrayList<Move> moves, Move best) {
+        int k = best == null ? -1 : moves.indexOf(best);
+        if (k > 0) {
+            moves.remove(k);
+            moves.add(0, best);
+        }
+    }
+
+
+    /** Return the statistics of my last search, or null if I have not
+     *  searched. */
+    SearchStats stats() {
+        return _stats;
+    }
+
+    /** Return the transposition table I use. */
+    TranspositionTable table() {
+        return _table;
+    }
+
+    /** Return the value of BOARD to the side to move, searching DEPTH
+     *  levels, and leave the principal variation from BOARD in
+     *  _pv[_ply].  The value is exact if it is strictly between ALPHA
+     *  and BETA; otherwise it is no more than ALPHA or no less than BETA,
+     *  and the exact value is at least as far outside.  Searching at
+     *  level 0 continues with a quiescence search (see quiesce).
+     *  Below the root, a result recorded in _table for the same position
+     *  from a search at least as deep is used instead of searching when
+     *  the window is null (BETA == ALPHA + 1), which keeps the principal
+     *  variation intact, and the best move recorded by a shallower one is
+     *  searched first.  After the first move, each move is searched with
+     *  a null window at ALPHA to show that it is no better, and searched
+     *  again with the full window only if it is.  Returns a meaningless
+     *  value if the search runs out of time. */
+    private int search(Board board, int depth, int alpha, int beta) {
+        if (depth == 0) {
+            _quiescenceLeft = QUIESCENCE_NODES;
+            return quiesce(board, alpha, beta);
+        }
+        _pvLength[_ply] = 0;
+        if (outOfTime()) {
+            return 0;
+        }
+        long key = board.key();
+        long hashMove = 0;
+        if (_ply == 0) {
+            hashMove = _rootMove == null ? 0 : _rootMove.packed();
+        } else {
+            long entry = _table.probe(key);
+            if (entry != 0) {
+                hashMove = _table.move(key);
+            }
+            if (entry != 0 && _table.depth(entry) >= depth
+                && beta - alpha == 1) {
+                int score = _table.score(entry);
+                switch (_table.bound(entry)) {
+                case EXACT:
+                    return score;
+                case LOWER:
+                    if (score >= beta) {
+                        return score;
+                    }
+                    break;
+                default:
+                    if (score <= alpha) {
+                        return score;
+                    }
+                    break;
+                }
+            }
+        }
+        Board.MoveList moves = moveList(_ply);
+        moves.clear();
+        board.getMoves(moves);
+        if (moves.size() == 0) {
+            board.setgameOver();
+        }
+        if (board.gameOver()) {
+            return staticScore(board);
+        }
+        orderMoves(moves, hashMove);
+        int alpha0 = alpha;
+        int bestScore = -INFTY;
+        long best = 0;
+        for (int i = 0; i < moves.size(); i += 1) {
+            long mov = nextMove(moves, i);
+            board.makeMove(mov);
+            _ply += 1;
+            int score;
+            if (i == 0) {
+                score = -search(board, depth - 1, -beta, -alpha);
+            } else {
+                score = -search(board, depth - 1, -alpha - 1, -alpha);
+                if (alpha < score && score < beta && !_stopped) {
+                    score = -search(board, depth - 1, -beta, -alpha);
+                }
+            }
+            _ply -= 1;
             board.undo();
-            if (beta <= alpha && best != null) {
-                return best;
+            if (_stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = mov;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(mov);
+                    if (alpha >= beta) {
+                        noteCutoff(mov, depth);
+                        _cutoffs += 1;
+                        if (i == 0) {
+                            _firstMoveCutoffs += 1;
+                        }
+                        break;
+                    }
+                }
             }
         }
-        return best;
+        int bound = bestScore <= alpha0 ? UPPER
+            : bestScore >= beta ? LOWER : EXACT;
+        _table.store(key, depth, bound, bestScore, best);
+        return bestScore;
     }
 
-    /**Returns move based on positive sense given BESTSCORE,
-     * POSSIBLEMOVES, BOARD, ALPHA, BETA, DEPTH.*/
-    Move positive(int[] bestScore, ArrayList<Move> possibleMoves, Board board,
-                  int alpha, int beta, int depth) {
-        Move best = null;
-        bestScore[0] = -INFTY;
-        for (int i = 0; i < possibleMoves.size(); i++) {
-            Move move = possibleMoves.get(i);
-            prune(possibleMoves);
-            board.makeMove(move);
-            int score =
-                    findMove(board, depth - 1, true, -1, alpha, beta);
-            if (score > bestScore[0]) {
-                best = move;
-                bestScore[0] = score;
-            }
-            alpha = Math.max(bestScore[0], alpha);
+    /** Return the value of BOARD to the side to move, as for search, but
+     *  searching only captures, and only until there are none pending:
+     *  a static estimate of a position with a capture pending would
+     *  ignore the pieces about to be lost, and capturing is compulsory.
+     *  A position is also estimated statically once _quiescenceLeft
+     *  positions have been searched. */
+    private int quiesce(Board board, int alpha, int beta) {
+        _pvLength[_ply] = 0;
+        _quiescenceNodes += 1;
+        _maxPly = Math.max(_maxPly, _ply);
+        if (outOfTime()) {
+            return 0;
+        }
+        Board.MoveList moves = moveList(_ply);
+        moves.clear();
+        board.getMoves(moves);
+        if (moves.size() == 0) {
+            board.setgameOver();
+        }
+        if (board.gameOver() || !packedIsJump(moves.get(0))
+            || _quiescenceLeft <= 0) {
+            return staticScore(board);
+        }
+        _quiescenceLeft -= 1;
+        orderMoves(moves, 0);
+        int bestScore = -INFTY;
+        for (int i = 0; i < moves.size(); i += 1) {
+            long mov = nextMove(moves, i);
+            board.makeMove(mov);
+            _ply += 1;
+            int score = -quiesce(board, -beta, -alpha);
+            _ply -= 1;
             board.undo();
-            if (beta <= alpha && best != null) {
-                return best;
+            if (_stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(mov);
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
             }
         }
-        return best;
+        return bestScore;
     }
 
-    /** Return a heuristic value for BOARD. */
-    private int staticScore(Board board) {
-        int score = 0;
-        int numWhite = board.number(WHITE);
-        int numBlack = board.number(BLACK);
-        if (board().whoseMove() == WHITE) {
-            score = numWhite - numBlack;
-        } else {
-            score = numBlack - numWhite;
+    /** Record that the principal variation from the position at the
+     *  current ply is MOV followed by the one from the position at the
+     *  next ply. */
+    private void updatePv(long mov) {
+        int length = _pvLength[_ply + 1];
+        _pv[_ply][0] = mov;
+        System.arraycopy(_pv[_ply + 1], 0, _pv[_ply], 1, length);
+        _pvLength[_ply] = length + 1;
+    }
+
+    /** Return the (reused) list for the moves from the position at
+     *  PLY. */
+    private Board.MoveList moveList(int ply) {
+        if (_moveLists[ply] == null) {
+            _moveLists[ply] = new Board.MoveList();
         }
-        if (board.gameOver()) {
-            if (numWhite > numBlack) {
-                return WINNING_VALUE;
+        return _moveLists[ply];
+    }
+
+    /** Compute the order in which to search MOVES, the moves from the
+     *  position at the current ply, whose packed best move from the
+     *  transposition table is HASHMOVE (0 if none).  The hash move comes
+     *  first, then captures, longest first, then the killer moves for
+     *  this ply, then the remaining moves by their history scores.
+     *  (Since capturing is compulsory, captures and other moves never
+     *  actually appear together.)  Only the scores are computed here;
+     *  nextMove selects the moves in order as they are needed, so that
+     *  no work is wasted sorting moves after a cutoff. */
+    private void orderMoves(Board.MoveList moves, long hashMove) {
+        int[] scores = _orderScores[_ply];
+        if (scores == null || scores.length < moves.size()) {
+            scores = _orderScores[_ply] = new int[moves.size() * 2];
+        }
+        long[] killers = _killers[_ply];
+        for (int i = 0; i < moves.size(); i += 1) {
+            long mov = moves.get(i);
+            if (mov == hashMove) {
+                scores[i] = HASH_SCORE;
+            } else if (!_ordering) {
+                scores[i] = 0;
+            } else if (packedIsJump(mov)) {
+                scores[i] = CAPTURE_SCORE + packedLegs(mov);
+            } else if (mov == killers[0]) {
+                scores[i] = KILLER_SCORE + 1;
+            } else if (mov == killers[1]) {
+                scores[i] = KILLER_SCORE;
             } else {
-                return -WINNING_VALUE;
+                scores[i] = _history[packedFrom(mov)][packedTo(mov)];
+            }
+        }
+    }
+
+    /** Return move #I of MOVES, the moves from the position at the
+     *  current ply, in the order computed by orderMoves, assuming that
+     *  moves #0 .. I-1 have been returned already.  The best-scoring of
+     *  moves #I and beyond is swapped into position I. */
+    private long nextMove(Board.MoveList moves, int i) {
+        int[] scores = _orderScores[_ply];
+        int best = i;
+        for (int j = i + 1; j < moves.size(); j += 1) {
+            if (scores[j] > scores[best]) {
+                best = j;
             }
         }
-        return score;
+        long mov = moves.get(best);
+        if (best != i) {
+            moves.set(best, moves.get(i));
+            moves.set(i, mov);
+            scores[best] = scores[i];
+        }
+        return mov;
+    }
+
+    /** Record that MOV caused a cutoff in a search DEPTH levels deep from
+     *  the position at the current ply. */
+    private void noteCutoff(long mov, int depth) {
+        if (packedIsJump(mov)) {
+            return;
+        }
+        long[] killers = _killers[_ply];
+        if (killers[0] != mov) {
+            killers[1] = killers[0];
+            killers[0] = mov;
+        }
+        int[] history = _history[packedFrom(mov)];
+        int to = packedTo(mov);
+        history[to] += depth * depth;
+        if (history[to] >= HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    /** Forget the killer moves and reduce the history scores, which
+     *  are from an earlier search. */
+    private void ageHeuristics() {
+        for (long[] killers : _killers) {
+            Arrays.fill(killers, 0);
+        }
+        ageHistory();
+    }
+
+    /** Halve all history scores. */
+    private void ageHistory() {
+        for (int[] history : _history) {
+            for (int to = 0; to < history.length; to += 1) {
+                history[to] >>= 1;
+            }
+        }
+    }
+
+    /** Return the static value of BOARD to the side to move according
+     *  to _tablebase, or Tablebase.UNKNOWN if there is no tablebase or
+     *  it does not cover BOARD. */
+    private int tablebaseScore(Board board) {
+        if (_tablebase == null
+            || board.number(WHITE) + board.number(BLACK)
+               > _tablebase.pieces()) {
+            return Tablebase.UNKNOWN;
+        }
+        int value = _tablebase.probe(board);
+        return value == Tablebase.UNKNOWN ? value : tablebaseScore(value);
+    }
+
+    /** Return the static value to the side to move of a position whose
+     *  value in a tablebase is VALUE. */
+    private static int tablebaseScore(int value) {
+        if (value == 0) {
+            return 0;
+        }
+        int score = TABLEBASE_WIN - Tablebase.distance(value);
+        return value > 0 ? score : -score;
+    }
+
+    /** Return a heuristic value for BOARD to the side to move, from
+     *  _tablebase if it shows a win or loss, and otherwise from my
+     *  evaluator, or -WINNING_VALUE if the game is over, since then the
+     *  side to move has lost. */
+    private int staticScore(Board board) {
+        if (board.gameOver()) {
+            return -WINNING_VALUE;
+        }
+        int hint = tablebaseScore(board);
+        if (hint != Tablebase.UNKNOWN && hint != 0) {
+            return hint;
+        }
+        return _evaluator.score(board);
     }
 
 }
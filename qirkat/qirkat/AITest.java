@@ -0,0 +1,213 @@
+package qirkat;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static qirkat.PieceColor.*;
+
+/** Tests of the AI's search.
+ *  @author Santhosh Subramanian
+ */
+public class AITest {
+
+    /** Return an AI to move in a game whose board is set up from
+     *  PIECES (as for Board.setPieces) with NEXTMOVE to move. */
+    private static AI ai(String pieces, PieceColor nextMove) {
+        Board b = new Board();
+        b.setPieces(pieces, nextMove);
+        Game game = new Game(b, new ReaderSource(new StringReader(""), false),
+                             new TextReporter());
+        return new AI(game, nextMove);
+    }
+
+    @Test
+    public void testPrincipalVariation() {
+        AI ai = ai("w-w-w-w-w-----b-b-b-bb-bb", WHITE);
+        Move mov = ai.findMove(5);
+        ArrayList<Move> pv = ai.principalVariation();
+        assertEquals(5, pv.size());
+        assertSame(mov, pv.get(0));
+        Board b = new Board();
+        b.setPieces("w-w-w-w-w-----b-b-b-bb-bb", WHITE);
+        for (Move m : pv) {
+            assertTrue("illegal move " + m + " in " + pv, b.legalMove(m));
+            b.makeMove(m);
+        }
+    }
+
+    @Test
+    public void testPondering() {
+        AI ai = ai("wwwww---------------bbbbb", WHITE);
+        Game game = ai.game();
+        Board board = game.getBoard();
+        game.setTimeLimit(200);
+        game.setPonder(true);
+
+        Move mov = ai.myMove();
+        Board pondered = ai.ponderPosition();
+        assertNotNull(pondered);
+        board.makeMove(mov);
+        assertTrue(reply(board, pondered, false));
+        mov = ai.myMove();
+        assertTrue(board.legalMove(mov));
+
+        pondered = ai.ponderPosition();
+        board.makeMove(mov);
+        assertTrue(reply(board, pondered, true));
+        mov = ai.myMove();
+        assertTrue(board.legalMove(mov));
+
+        /* Even without a time limit, a ponder hit must end. */
+        game.setTimeLimit(0);
+        pondered = ai.ponderPosition();
+        board.makeMove(mov);
+        assertTrue(reply(board, pondered, true));
+        mov = ai.myMove();
+        assertTrue(board.legalMove(mov));
+        ai.stop();
+        assertNull(ai.ponderPosition());
+    }
+
+    /** An interrupt while waiting for a ponder hit must stop the ponder
+     *  search, still produce a move, and be passed on. */
+    @Test
+    public void testPonderInterrupted() {
+        AI ai = ai("wwwww---------------bbbbb", WHITE);
+        Game game = ai.game();
+        Board board = game.getBoard();
+        game.setTimeLimit(200);
+        game.setPonder(true);
+
+        Move mov = ai.myMove();
+        Board pondered = ai.ponderPosition();
+        board.makeMove(mov);
+        assertTrue(reply(board, pondered, true));
+        Thread.currentThread().interrupt();
+        mov = ai.myMove();
+        assertTrue(Thread.interrupted());
+        assertTrue(board.legalMove(mov));
+        ai.stop();
+    }
+
+    /** A "clear" while a manual player is to move must end the game
+     *  rather than start a new session inside it, so that the session
+     *  stops its players (and so their pondering) as usual. */
+    @Test
+    public void testClearDuringGame() {
+        Game game = new Game(new Board(),
+                             new ReaderSource(new StringReader("clear\n"),
+                                              false),
+                             new TextReporter());
+        game.getBoard().makeMove(Move.parseMove("c2-c3"));
+        game.doStart(null);
+        assertNull(new Manual(game, BLACK).myMove());
+        assertEquals(new Board(), game.getBoard());
+    }
+
+    /** Make a move on BOARD that reaches POSITION if HIT, and otherwise
+     *  one that does not.  Return true iff there was such a move. */
+    private static boolean reply(Board board, Board position, boolean hit) {
+        for (Move reply : board.getMoves()) {
+            board.makeMove(reply);
+            if (board.equals(position) == hit) {
+                return true;
+            }
+            board.undo();
+        }
+        return false;
+    }
+
+    /** A zero time limit would let AIs search to the maximum depth, which
+     *  never finishes, so it must be rejected. */
+    @Test
+    public void testTimeLimit() {
+        Game game = ai("w-w-w-w-w-----b-b-b-bb-bb", WHITE).game();
+        game.doTime(new String[] { "300" });
+        assertEquals(300, game.timeLimit());
+        for (String msec : new String[] { "0", "-5" }) {
+            try {
+                game.doTime(new String[] { msec });
+                fail("accepted time " + msec);
+            } catch (GameException excp) {
+                assertEquals(300, game.timeLimit());
+            }
+        }
+    }
+
+    @Test
+    public void testStats() {
+        AI ai = ai("w-w-w-w-w-----b-b-b-bb-bb", WHITE);
+        assertNull(ai.stats());
+        ai.findMove(5);
+        SearchStats stats = ai.stats();
+        assertEquals(5, stats.depth());
+        assertTrue(stats.selectiveDepth() >= 5);
+        assertEquals(ai.nodes(), stats.nodes());
+        assertTrue(0 < stats.quiescenceNodes()
+                   && stats.quiescenceNodes() < stats.nodes());
+        assertTrue(stats.cutoffs() > 0);
+        assertTrue(0 < stats.firstMoveCutoffRate()
+                   && stats.firstMoveCutoffRate() <= 1);
+        assertTrue(stats.branchingFactor() > 1);
+        assertTrue(0 < stats.tableHits()
+                   && stats.tableHits() <= stats.tableProbes());
+        assertTrue(stats.toJson().matches(
+            "\\{\"depth\":5,\"seldepth\":\\d+,\"nodes\":"
+            + stats.nodes() + ",.*\\}"));
+    }
+
+    /** Check that searching with several threads gives legal moves and
+     *  principal variations in the positions of some random games. */
+    @Test
+    public void testParallelSearch() {
+        for (int seed = 0; seed < 10; seed += 1) {
+            AI ai = ai("wwwwwwwwwwbb-wwbbbbbbbbbb", WHITE);
+            Game game = ai.game();
+            Board board = game.getBoard();
+            Random random = new Random(seed);
+            game.setThreads(4);
+            for (int ply = 0; ply < 80 && !board.getMoves().isEmpty();
+                 ply += 1) {
+                Move mov = ai.findMove(3 + random.nextInt(3));
+                assertTrue("illegal move " + mov, board.legalMove(mov));
+                Board b = new Board(board);
+                for (Move m : ai.principalVariation()) {
+                    assertTrue("illegal move " + m + " in pv",
+                               b.legalMove(m));
+                    b.makeMove(m);
+                }
+                ArrayList<Move> moves = board.getMoves();
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    /** At depth 1, b1-b2 looks best statically, since it advances a
+     *  piece, but Black then captures it with b3-b1.  Only the quiescence
+     *  search sees the pending capture and so avoids the move. */
+    @Test
+    public void testQuiescence() {
+        AI ai = ai("-w---------b-----w-b-----", WHITE);
+        Move mov = ai.findMove(1);
+        assertEquals("b1-c1", mov.toString());
+        assertTrue(ai.stats().quiescenceNodes() > 0);
+
+        Board b = new Board(ai.game().getBoard());
+        b.makeMove(Move.parseMove("b1-b2"));
+        assertTrue(b.getMoves().get(0).isJump());
+        b.undo();
+        b.makeMove(mov);
+        assertFalse(b.getMoves().get(0).isJump());
+    }
+
+    @Test
+    public void testLongestCapture() {
+        AI ai = ai("wb----b-b--b----bb---b---", WHITE);
+        assertEquals("a1-c1-a3-c3-c5-a5-c3-e1", ai.findMove(3).toString());
+    }
+
+}
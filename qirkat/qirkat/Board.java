@@ -1,9 +1,9 @@
 package qirkat;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Observable;
-import java.util.Observer;
-import java.util.Stack;
+import java.util.Random;
 
 import static qirkat.Move.*;
 import static qirkat.PieceColor.*;
@@ -27,28 +27,248 @@ class Board extends Observable {
      */
     static final PieceColor[] PIECE_VALUES = PieceColor.values();
 
-   /** Setup Board. **/
-    private final PieceColor[] setup = {
-        WHITE, WHITE, WHITE, WHITE, WHITE,
-        WHITE, WHITE, WHITE, WHITE, WHITE,
-        BLACK, BLACK, EMPTY, WHITE, WHITE,
-        BLACK, BLACK, BLACK, BLACK, BLACK,
-        BLACK, BLACK, BLACK, BLACK, BLACK,
-    };
     /**
-     * Creates _board.
+     * Mask with one bit set for each square on the board.  Bit K of a
+     * mask stands for the square with linearized index K.
      */
-    private PieceColor[] _board = new PieceColor[MAX_INDEX + 1];
+    static final int ALL_SQUARES = (1 << (MAX_INDEX + 1)) - 1;
+
+    /**
+     * Directions, in the order in which jumps are generated.
+     */
+    static final int NORTH = 0, SOUTH = 1, WEST = 2, EAST = 3,
+        SOUTHEAST = 4, NORTHWEST = 5, SOUTHWEST = 6, NORTHEAST = 7;
+    /**
+     * Number of ints in the fixed part of each move's undo record.
+     */
+    private static final int UNDO_FRAME = 3;
+    /**
+     * Initial capacity of the undo log.
+     */
+    private static final int UNDO_CAPACITY = 256;
+    /**
+     * Number of directions.  Directions >= SOUTHEAST are diagonal, and
+     * exist only from squares with an even linearized index.
+     */
+    static final int NUM_DIRECTIONS = 8;
+    /**
+     * Column and row steps for each direction.
+     */
+    private static final int[]
+        DCOL = { 0, 0, -1, 1, 1, -1, -1, 1 },
+        DROW = { 1, -1, 0, 0, -1, 1, -1, 1 };
+    /**
+     * Change in linearized index of one step in each direction.
+     */
+    static final int[] OFFSET = new int[NUM_DIRECTIONS];
+    /**
+     * NEIGHBORS[K] is the mask of squares adjacent to square K along a
+     * line of the board.
+     */
+    static final int[] NEIGHBORS = new int[MAX_INDEX + 1];
+    /**
+     * JUMP_OVER[K][D] and JUMP_LANDING[K][D] are the linearized
+     * indices of the square jumped over and the square landed on by a
+     * jump from K in direction D, or -1 if that jump leaves the board.
+     */
+    static final int[][]
+        JUMP_OVER = new int[MAX_INDEX + 1][NUM_DIRECTIONS],
+        JUMP_LANDING = new int[MAX_INDEX + 1][NUM_DIRECTIONS];
+    /**
+     * JUMP_SOURCES[D] is the mask of squares from which a jump in
+     * direction D stays on the board.
+     */
+    static final int[] JUMP_SOURCES = new int[NUM_DIRECTIONS];
+    /**
+     * STEP_TARGET[K][D] is the linearized index of the square one step
+     * from K in direction D, or -1 if there is no such square.
+     */
+    static final int[][] STEP_TARGET = new int[MAX_INDEX + 1][NUM_DIRECTIONS];
+    /**
+     * Directions of the non-capturing moves of white and of black pieces,
+     * in the order in which those moves are generated.
+     */
+    private static final int[]
+        WHITE_STEPS = { WEST, EAST, NORTH, NORTHWEST, NORTHEAST },
+        BLACK_STEPS = { WEST, EAST, SOUTH, SOUTHWEST, SOUTHEAST };
+    /**
+     * STEP_DIRECTIONS[0][K] and STEP_DIRECTIONS[1][K] list, in order of
+     * generation, the directions in which a white or black piece on K
+     * may step (if the target square is empty and the move is not a
+     * barred sideways one).  Sideways steps along a piece's last row are
+     * omitted.
+     */
+    private static final int[][][] STEP_DIRECTIONS =
+        new int[2][MAX_INDEX + 1][];
+    /**
+     * STEP_SOURCES[0][D] and STEP_SOURCES[1][D] are the masks of squares
+     * from which a white or black piece may step in direction D (see
+     * STEP_DIRECTIONS).
+     */
+    private static final int[][] STEP_SOURCES = new int[2][NUM_DIRECTIONS];
+    /**
+     * STEP_FROM[0][K] and STEP_FROM[1][K] are the masks of squares from
+     * which a white or black piece may step to K.
+     */
+    private static final int[][] STEP_FROM = new int[2][MAX_INDEX + 1];
+    /**
+     * JUMP_DIRECTIONS[K] lists, in order of generation, the directions
+     * in which a jump from K stays on the board.  See JUMP_OVER and
+     * JUMP_LANDING for the squares involved.
+     */
+    static final int[][] JUMP_DIRECTIONS = new int[MAX_INDEX + 1][];
+
+    static {
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            OFFSET[d] = DCOL[d] + DROW[d] * SIDE;
+        }
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            int c = k % SIDE, r = k / SIDE;
+            for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+                JUMP_OVER[k][d] = JUMP_LANDING[k][d] = -1;
+                STEP_TARGET[k][d] = -1;
+                if (d >= SOUTHEAST && k % 2 != 0) {
+                    continue;
+                }
+                if (onBoard(c + DCOL[d], r + DROW[d])) {
+                    NEIGHBORS[k] |= 1 << (k + OFFSET[d]);
+                    STEP_TARGET[k][d] = k + OFFSET[d];
+                }
+                if (onBoard(c + 2 * DCOL[d], r + 2 * DROW[d])) {
+                    JUMP_OVER[k][d] = k + OFFSET[d];
+                    JUMP_LANDING[k][d] = k + 2 * OFFSET[d];
+                    JUMP_SOURCES[d] |= 1 << k;
+                }
+            }
+            STEP_DIRECTIONS[0][k] = stepDirections(k, WHITE_STEPS, SIDE - 1);
+            STEP_DIRECTIONS[1][k] = stepDirections(k, BLACK_STEPS, 0);
+            JUMP_DIRECTIONS[k] = jumpDirections(k);
+            for (int side = 0; side < 2; side += 1) {
+                for (int d : STEP_DIRECTIONS[side][k]) {
+                    STEP_SOURCES[side][d] |= 1 << k;
+                    STEP_FROM[side][STEP_TARGET[k][d]] |= 1 << k;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return those of DIRECTIONS in which a piece on K may step, where
+     * its last row is LASTROW (numbered from 0).
+     */
+    private static int[] stepDirections(int k, int[] directions,
+                                        int lastRow) {
+        int[] result = new int[directions.length];
+        int n = 0;
+        for (int d : directions) {
+            boolean sideways = d == WEST || d == EAST;
+            if (STEP_TARGET[k][d] >= 0 && !(sideways && k / SIDE == lastRow)) {
+                result[n] = d;
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Return the directions, in increasing order, in which a jump from K
+     * stays on the board.
+     */
+    private static int[] jumpDirections(int k) {
+        int[] result = new int[NUM_DIRECTIONS];
+        int n = 0;
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            if (JUMP_OVER[k][d] >= 0) {
+                result[n] = d;
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Return the direction whose column and row steps are DCOL and DROW,
+     * or -1 if there is none.
+     */
+    static int direction(int dcol, int drow) {
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            if (DCOL[d] == dcol && DROW[d] == drow) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Zobrist keys: PIECE_KEYS[0][K] and PIECE_KEYS[1][K] for a white or
+     * black piece on square K, RESTRICTION_KEYS[K][0] and [1] for a
+     * horizontal move into K being barred from the right or from the
+     * left, and BLACK_TO_MOVE_KEY for black being on move.  The seed is
+     * fixed so that keys are the same from run to run.
+     */
+    private static final long[][]
+        PIECE_KEYS = new long[2][MAX_INDEX + 1],
+        RESTRICTION_KEYS = new long[MAX_INDEX + 1][2];
+    /** See PIECE_KEYS. */
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        Random keys = new Random(0x51f6a7L);
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            PIECE_KEYS[0][k] = keys.nextLong();
+            PIECE_KEYS[1][k] = keys.nextLong();
+            RESTRICTION_KEYS[k][0] = keys.nextLong();
+            RESTRICTION_KEYS[k][1] = keys.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = keys.nextLong();
+    }
+
+    /**
+     * The squares occupied by white and black pieces.
+     */
+    private int _white, _black;
+
+    /**
+     * Zobrist key of the current position: the XOR of the keys for each
+     * piece, each horizontal-move restriction, and the side to move.
+     */
+    private long _key;
 
     /** New Horizontal board _h. **/
     private char[][] _h = new char[MAX_INDEX + 1][2];
 
     /**
-     * A copy of B.
+     * Masks of the squares into which a sideways move is barred by _h:
+     * bit K of _barredFromEast is set iff the piece on K + 1 may not move
+     * west into K, and likewise for _barredFromWest and K - 1.
+     */
+    private int _barredFromEast, _barredFromWest;
+
+    /**
+     * Starting square and landing squares of the capture sequence being
+     * built by getJumps.
+     */
+    private final int[] _jumpPath = new int[MAX_INDEX + 1];
+
+    /**
+     * The undo log.  For each move made by makeMove and not yet undone,
+     * it holds a frame of UNDO_FRAME ints (my white and black masks and
+     * my side to move and game-over flag, as of just before the move),
+     * then a (square, old value) pair for each _h entry the move changed,
+     * in order, and then the number of such pairs.  It holds _undoSize
+     * ints in all.  The log grows as needed, but is never reallocated
+     * during a search that stays within the depth of earlier ones.
+     */
+    private int[] _undoLog = new int[UNDO_CAPACITY];
+    /**
+     * _undoKeys[I] is my key before move number I in the undo log.
      */
-    private Stack<PieceColor[]> firstBoard = new Stack<>();
-    /** NEWBOARD.**/
-    private PieceColor[] newBoard = new PieceColor[MAX_INDEX + 1];
+    private long[] _undoKeys = new long[UNDO_CAPACITY];
+    /**
+     * Number of ints in _undoLog, number of moves it records, and the
+     * index of the first _h change of the move being made.
+     */
+    private int _undoSize, _undoMoves, _undoMark;
     /**
      * Player that is on move.
      */
@@ -58,6 +278,14 @@ class Board extends Observable {
      */
     private boolean _gameOver;
 
+    /** True iff I do not notify my observers of changes (see
+     *  setSilent). */
+    private boolean _silent;
+
+    /** Number of times I have changed, which tells my constant views
+     *  when their copies are stale. */
+    private int _version;
+
 
     /**
      * A new, cleared board at the start of the game.
@@ -70,9 +298,32 @@ class Board extends Observable {
         internalCopy(b);
     }
 
+    /**
+     * Make me silent iff SILENT: a silent board does not notify its
+     * observers of changes, which spares searches, which make and undo
+     * moves on private boards that nothing observes, the synchronized
+     * bookkeeping of Observable.
+     */
+    void setSilent(boolean silent) {
+        _silent = silent;
+    }
+
+    /**
+     * Notify my observers that I have changed, unless I am silent.
+     */
+    private void announce() {
+        _version += 1;
+        if (!_silent) {
+            setChanged();
+            notifyObservers();
+        }
+    }
+
     /**
      * Return a constant view of me (allows any access method, but no
-     * method that modifies it).
+     * method that modifies it).  The view follows my changes, copying
+     * me only when it is read after one, and does not notify observers
+     * itself.
      */
     Board constantView() {
         return this.new ConstantBoard();
@@ -86,42 +337,89 @@ class Board extends Observable {
         _whoseMove = WHITE;
         _gameOver = false;
         setPieces("wwwwwwwwwwbb-wwbbbbbbbbbb", _whoseMove);
-        setChanged();
-        notifyObservers();
-
     }
-    /** Undo. **/
+    /** Undo the last move made by makeMove, if any. **/
     void undo() {
-        nextMove();
-        if (firstBoard.size() > 0) {
-            this._board = copyBoard(firstBoard.pop());
-            nextMove();
+        if (_undoMoves > 0) {
+            _undoMoves -= 1;
+            _undoSize -= 1;
+            for (int n = _undoLog[_undoSize]; n > 0; n -= 1) {
+                _undoSize -= 2;
+                int k = _undoLog[_undoSize], old = _undoLog[_undoSize + 1];
+                _h[k][0] = (char) (old >>> 16);
+                _h[k][1] = (char) old;
+                updateBarred(k);
+            }
+            _undoSize -= UNDO_FRAME;
+            _white = _undoLog[_undoSize];
+            _black = _undoLog[_undoSize + 1];
+            _whoseMove = PIECE_VALUES[_undoLog[_undoSize + 2] >> 1];
+            _gameOver = (_undoLog[_undoSize + 2] & 1) != 0;
+            _key = _undoKeys[_undoMoves];
         }
-        setChanged();
-        notifyObservers();
+        announce();
     }
+
+    /**
+     * Start the undo record of a move, saving my piece masks, side to
+     * move, game-over flag, and key.
+     */
+    private void beginUndoRecord() {
+        reserveUndo(UNDO_FRAME);
+        _undoLog[_undoSize] = _white;
+        _undoLog[_undoSize + 1] = _black;
+        _undoLog[_undoSize + 2] =
+            (_whoseMove.ordinal() << 1) | (_gameOver ? 1 : 0);
+        _undoSize += UNDO_FRAME;
+        if (_undoMoves == _undoKeys.length) {
+            _undoKeys = Arrays.copyOf(_undoKeys, 2 * _undoMoves);
+        }
+        _undoKeys[_undoMoves] = _key;
+        _undoMark = _undoSize;
+    }
+
+    /**
+     * Finish the undo record begun by beginUndoRecord, recording the
+     * number of _h entries the move changed.
+     */
+    private void endUndoRecord() {
+        reserveUndo(1);
+        _undoLog[_undoSize] = (_undoSize - _undoMark) / 2;
+        _undoSize += 1;
+        _undoMoves += 1;
+    }
+
+    /**
+     * Make room for N more ints in _undoLog.
+     */
+    private void reserveUndo(int n) {
+        if (_undoSize + n > _undoLog.length) {
+            _undoLog = Arrays.copyOf(_undoLog, 2 * (_undoSize + n));
+        }
+    }
+
+    /**
+     * Forget all moves made so far, so that undo does nothing.
+     */
+    private void clearUndo() {
+        _undoSize = _undoMoves = 0;
+    }
+
     /** Nextmove. **/
     void nextMove() {
         if (whoseMove().equals(WHITE)) {
             _whoseMove = BLACK;
+            _key ^= BLACK_TO_MOVE_KEY;
             return;
         }
         if (whoseMove().equals(BLACK)) {
             _whoseMove = WHITE;
+            _key ^= BLACK_TO_MOVE_KEY;
             return;
         }
     }
-    /** RETURNS array based on BEGIN. **/
-    private PieceColor[] copyBoard(PieceColor[] begin) {
-        if (begin != null) {
-            PieceColor[] output = newboard(begin);
-            return output;
-        }
-        return setup;
-    }
-
     /**
-     * Copy B into me.
+     * Copy B into me.  Moves made before cannot be undone.
      */
     void copy(Board b) {
         internalCopy(b);
@@ -131,13 +429,20 @@ class Board extends Observable {
      * Copy B into me.
      */
     private void internalCopy(Board b) {
+        b.refresh();
+        _version += 1;
         _whoseMove = b._whoseMove;
-        if (_board != null) {
-            for (int i = 0; i < MAX_INDEX + 1; i++) {
-                set(i, b.get(i));
-            }
+        _white = b._white;
+        _black = b._black;
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            _h[k][0] = b._h[k][0];
+            _h[k][1] = b._h[k][1];
         }
+        _barredFromEast = b._barredFromEast;
+        _barredFromWest = b._barredFromWest;
+        _key = b._key;
         _gameOver = b._gameOver;
+        clearUndo();
     }
 
     /**
@@ -156,27 +461,49 @@ class Board extends Observable {
         if (!str.matches("[bw-]{25}")) {
             throw new IllegalArgumentException("bad board description");
         }
+        int white = 0, black = 0;
         for (int k = 0; k < str.length(); k += 1) {
             switch (str.charAt(k)) {
-            case '-':
-                set(k, EMPTY);
-                break;
             case 'b':
             case 'B':
-                set(k, BLACK);
+                black |= 1 << k;
                 break;
             case 'w':
             case 'W':
-                set(k, WHITE);
+                white |= 1 << k;
                 break;
             default:
                 break;
             }
         }
+        setPieces(white, black, nextMove);
+    }
+
+    /**
+     * Set my contents to the pieces whose squares are given by the masks
+     * WHITE and BLACK (bit K for linearized index K), with NEXTMOVE to
+     * move and no restrictions on sideways moves.  The masks must not
+     * overlap.
+     */
+    void setPieces(int white, int black, PieceColor nextMove) {
+        if (nextMove == EMPTY || nextMove == null) {
+            throw new IllegalArgumentException("bad player color");
+        }
+        if ((white & black) != 0 || ((white | black) & ~ALL_SQUARES) != 0) {
+            throw new IllegalArgumentException("bad board description");
+        }
+        _white = white;
+        _black = black;
+        for (char[] restriction : _h) {
+            restriction[0] = restriction[1] = 0;
+        }
+        _barredFromEast = _barredFromWest = 0;
         _whoseMove = nextMove;
+        _gameOver = false;
+        _key = computeKey();
+        clearUndo();
 
-        setChanged();
-        notifyObservers();
+        announce();
     }
 
     /**
@@ -203,25 +530,37 @@ class Board extends Observable {
      * Return the current contents of the square at linearized index K.
      */
     PieceColor get(int k) {
-        if (validSquare(k)) {
-            return this._board[k];
-        } else {
+        if (!validSquare(k)) {
             return null;
+        } else if ((_white & (1 << k)) != 0) {
+            return WHITE;
+        } else if ((_black & (1 << k)) != 0) {
+            return BLACK;
+        } else {
+            return EMPTY;
         }
     }
 
     /**
-     * for (PieceColor piece : _board) Checks COLOR.
-     * returns int pieces
+     * Return the number of squares containing COLOR (EMPTY counts the
+     * empty squares).
      */
     int number(PieceColor color) {
-        int count = 0;
-        for (int i = 0; i < _board.length; i++) {
-            if (color == get(i)) {
-                count += 1;
-            }
+        return Integer.bitCount(pieces(color));
+    }
+
+    /**
+     * Return the mask of squares containing COLOR.
+     */
+    int pieces(PieceColor color) {
+        switch (color) {
+        case WHITE:
+            return _white;
+        case BLACK:
+            return _black;
+        default:
+            return ~(_white | _black) & ALL_SQUARES;
         }
-        return count;
     }
 
     /**
@@ -239,14 +578,117 @@ class Board extends Observable {
      */
     private void set(int k, PieceColor v) {
         if (validSquare(k)) {
-            _board[k] = v;
+            _key ^= pieceKey(k) ^ pieceKey(k, v);
+            _white &= ~(1 << k);
+            _black &= ~(1 << k);
+            if (v == WHITE) {
+                _white |= 1 << k;
+            } else if (v == BLACK) {
+                _black |= 1 << k;
+            }
         }
     }
 
-    /** Returns whether or not MOV is
-     * legal. */
+    /**
+     * Return true iff MOV is legal: i.e., iff it is one of the moves
+     * getMoves would return.  Takes time proportional to the number of
+     * legs of MOV, and does not change gameOver().
+     */
     boolean legalMove(Move mov) {
-        return getMoves().contains(mov);
+        if (mov == null || gameOver() || mov.isVestigial()
+            || get(mov.fromIndex()) != whoseMove()) {
+            return false;
+        } else if (!mov.isJump()) {
+            return !jumpPossible()
+                && legalStep(mov.fromIndex(),
+                             direction(mov.col1() - mov.col0(),
+                                       mov.row1() - mov.row0()));
+        }
+        int white = _white, black = _black;
+        int k = mov.fromIndex();
+        for (Move leg = mov; leg != null && k >= 0; leg = leg.jumpTail()) {
+            int dcol = leg.col1() - leg.col0(), drow = leg.row1() - leg.row0();
+            if (dcol % 2 != 0 || drow % 2 != 0) {
+                k = -1;
+            } else {
+                k = jumpLeg(k, direction(dcol / 2, drow / 2));
+            }
+        }
+        boolean legal = k >= 0 && !jumpPossible(k);
+        _white = white;
+        _black = black;
+        return legal;
+    }
+
+    /**
+     * Return true iff the packed move MOV (see Move.packed) is legal, as
+     * for legalMove(Move).
+     */
+    boolean legalMove(long mov) {
+        int k = packedFrom(mov), legs = packedLegs(mov);
+        if (gameOver() || legs == 0 || get(k) != whoseMove()) {
+            return false;
+        } else if (!packedIsJump(mov)) {
+            return legs == 1 && !jumpPossible()
+                && legalStep(k, packedDirection(mov, 0));
+        }
+        int white = _white, black = _black;
+        for (int i = 0; i < legs && k >= 0; i += 1) {
+            k = jumpLeg(k, packedDirection(mov, i));
+        }
+        boolean legal = k >= 0 && !jumpPossible(k);
+        _white = white;
+        _black = black;
+        return legal;
+    }
+
+    /**
+     * Return true iff the side to move may move its piece at K one step
+     * in direction D (-1 for no direction), assuming it has no capture.
+     */
+    private boolean legalStep(int k, int d) {
+        int to = d < 0 ? -1 : STEP_TARGET[k][d];
+        if (to < 0 || get(to) != EMPTY || sidewaysBarred(k, to)) {
+            return false;
+        }
+        for (int step : STEP_DIRECTIONS[whoseMove() == WHITE ? 0 : 1][k]) {
+            if (step == d) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true iff _h bars a sideways step from K to TO (false if the
+     * step is not sideways).
+     */
+    private boolean sidewaysBarred(int k, int to) {
+        if (to == k - 1) {
+            return (_barredFromEast & (1 << to)) != 0;
+        } else if (to == k + 1) {
+            return (_barredFromWest & (1 << to)) != 0;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * If the side to move can jump from K in direction D (-1 for no
+     * direction), make that jump on my piece masks only and return the
+     * linearized index of the square landed on.  Otherwise, return -1.
+     */
+    private int jumpLeg(int k, int d) {
+        int over = d < 0 ? -1 : JUMP_OVER[k][d];
+        if (over < 0 || (pieces(whoseMove().opposite()) & (1 << over)) == 0
+            || get(JUMP_LANDING[k][d]) != EMPTY) {
+            return -1;
+        }
+        int land = JUMP_LANDING[k][d];
+        int from = 1 << k, to = 1 << land, captured = ~(1 << over);
+        _white = movePiece(_white, from, to) & captured;
+        _black = movePiece(_black, from, to) & captured;
+        return land;
     }
 
     /**
@@ -255,8 +697,9 @@ class Board extends Observable {
     public ArrayList<Move> getMoves() {
         ArrayList<Move> result = new ArrayList<>();
         getMoves(result);
-        if (result.isEmpty()) {
+        if (result.isEmpty() && !_gameOver) {
             _gameOver = true;
+            _version += 1;
         }
         return result;
     }
@@ -266,426 +709,141 @@ class Board extends Observable {
         if (gameOver()) {
             return;
         }
+        int mine = pieces(whoseMove());
         if (jumpPossible()) {
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                if (get(k) == whoseMove()) {
-                    getJumps(moves, k);
-                }
-            }
-            if (moves.size() > 0) {
-                ArrayList<Move> total = combiner(moves);
-                moves.clear();
-                moves.addAll(total);
+            for (; mine != 0; mine &= mine - 1) {
+                getJumps(moves, Integer.numberOfTrailingZeros(mine));
             }
         } else {
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                if (get(k) == whoseMove()) {
-                    getMoves(moves, k);
+            int empty = pieces(EMPTY);
+            int[][] steps = STEP_DIRECTIONS[whoseMove() == WHITE ? 0 : 1];
+            for (; mine != 0; mine &= mine - 1) {
+                int k = Integer.numberOfTrailingZeros(mine);
+                if ((NEIGHBORS[k] & empty) == 0) {
+                    continue;
                 }
-            }
-        }
-    }
-
-    /** Checks whether or not values match based on
-     * I, COL, ROW given by MOVES. RETURNS true or false
-     **/
-    private boolean check(ArrayList<Move> moves, int i,
-                          char col, char row) {
-        char col1 = moves.get(i).col0();
-        char row2 = moves.get(i).row0();
-        return col == col1 && row == row2;
-    }
-    /** RETURNS arraylist of combined MOVES. **/
-    private ArrayList<Move> combiner(ArrayList<Move> moves) {
-        ArrayList<Move> total = new ArrayList<>();
-        total.add(moves.get(0)); char col = moves.get(0).col1();
-        char row = moves.get(0).row1();
-        int a = 0; int b = 0;
-        for (int i = 1; i < moves.size(); i++) {
-            if (!check(moves, i, col, row)) {
-                total.add(moves.get(a)); b++;
-                char startingCol = moves.get(a).col0();
-                char startingRow = moves.get(a).row0();
-                col = moves.get(a).col1();
-                row = moves.get(a).row1();
-                int j = a + 1;
-                while (!check(moves, i, col, row) && j < i) {
-                    if (check(moves, j, col, row)) {
-                        total.set(b, movegenerator(total, moves, b, j));
-                    } else {
-                        total.set(b, movegenerator(moves, moves, a, j));
+                for (int d : steps[k]) {
+                    int to = STEP_TARGET[k][d];
+                    if ((empty & (1 << to)) != 0 && !sidewaysBarred(k, to)) {
+                        moves.add(Move.move(k, to));
                     }
-                    col = moves.get(j).col1();
-                    row = moves.get(j).row1();
-                    j++;
                 }
-                if (j != i && !check(moves, j, startingCol, startingRow)) {
-                    total.set(b, Move.move(total.get(b), moves.get(i)));
-                } else {
-                    total.set(b, moves.get(i));
-                    a = i;
-                }
-                col = moves.get(i).col1();
-                row = moves.get(i).row1();
-            } else {
-                total.set(b, movegenerator(total, moves, b, i));
-                col = moves.get(i).col1();
-                row = moves.get(i).row1();
-            }
-        }
-        return total;
-    }
-    /** RETURNS moves based on MOVE, NEWMOVE, F, I. **/
-    private Move movegenerator(ArrayList<Move> move,
-        ArrayList<Move> newmove, int f, int i) {
-        return Move.move(move.get(f), newmove.get(i));
-    }
-    /**
-     * Add all legal non-capturing moves from the position
-     * with linearized index K to MOVES.
-     */
-    private void getMoves(ArrayList<Move> moves, int k) {
-        PieceColor mypiece = get(k);
-        if (validSquare(k)) {
-            if (mypiece.equals(BLACK) && whoseMove().equals(BLACK)) {
-                blackpieces(moves, k);
-            }
-            if (mypiece.equals(WHITE) && whoseMove().equals(WHITE)) {
-                whitepieces(moves, k);
-            }
-        }
-    }
-    /** Given COL, ROW, K, RETURNS true or false. **/
-    private boolean checkhorizontal(char col, char row, int k) {
-        return (col != _h[k][0]) || (row != _h[k][1]);
-    }
-    /** Given MOVES, K RETURNS arraylist moves of blackpieces. **/
-    private ArrayList<Move> blackpieces(ArrayList<Move> moves, int k) {
-        char col = col(k);
-        char row = row(k);
-        char south = (char) (row(k) - 1);
-        char west = (char) (col(k) - 1);
-        char east = (char) (col(k) + 1);
-        int west2 = k - 1;
-        int east2 = k + 1;
-        if (checker(west, row) && !(row == '1')
-                && checkhorizontal(col, row, west2)) {
-            moves.add(get("west", col, row, k, 1));
-        }
-        if (checker(east, row) && !(row == '1')
-                && checkhorizontal(col, row, east2)) {
-            moves.add(get("east", col, row, k, 1));
-        }
-        if (checker(col, south)) {
-            moves.add(get("south", col, row, k, 1));
-        }
-        if (k % 2 == 0) {
-            if (checker(west, south)) {
-                moves.add(get("southwest", col, row, k, 1));
-            }
-            if (checker(east, south)) {
-                moves.add(get("southeast", col, row, k, 1));
             }
         }
-        return moves;
     }
 
     /**
-     * Gets all MOVES for white pieces using index K.
-     * Return arraylist moves.
+     * Add all legal moves from the current position to MOVES in packed
+     * form (see Move.packed), in the same order as getMoves(ArrayList)
+     * adds them.  Creates no Moves.
      */
-    private ArrayList<Move> whitepieces(ArrayList<Move> moves, int k) {
-        char col = col(k);
-        char row = row(k);
-        char north = (char) (row(k) + 1);
-        char west = (char) (col(k) - 1);
-        char east = (char) (col(k) + 1);
-        int west2 = k - 1;
-        int east2 = k + 1;
-        if (checker(west, row) && !(row == '5')
-                && checkhorizontal(col, row, west2)) {
-            moves.add(get("west", col, row, k, 1));
-        }
-        if (checker(east, row) && !(row == '5')
-                && checkhorizontal(col, row, east2)) {
-            moves.add(get("east", col, row, k, 1));
-        }
-        if (checker(col, north)) {
-            moves.add(get("north", col, row, k, 1));
+    void getMoves(MoveList moves) {
+        if (gameOver()) {
+            return;
         }
-        if (k % 2 == 0) {
-            if (checker(west, north)) {
-                moves.add(get("northwest", col, row, k, 1));
+        int mine = pieces(whoseMove());
+        if (jumpPossible()) {
+            for (; mine != 0; mine &= mine - 1) {
+                int k = Integer.numberOfTrailingZeros(mine);
+                getJumps(moves, k, packStart(k, true));
             }
-            if (checker(east, north)) {
-                moves.add(get("northeast", col, row, k, 1));
+            return;
+        }
+        int empty = pieces(EMPTY);
+        int[][] steps = STEP_DIRECTIONS[whoseMove() == WHITE ? 0 : 1];
+        for (; mine != 0; mine &= mine - 1) {
+            int k = Integer.numberOfTrailingZeros(mine);
+            for (int d : steps[k]) {
+                int to = STEP_TARGET[k][d];
+                if ((empty & (1 << to)) != 0 && !sidewaysBarred(k, to)) {
+                    moves.add(packLeg(packStart(k, false), d));
+                }
             }
         }
-        return moves;
     }
 
     /**
-     * Given COL and ROW returns whether the tile is empty.
-     */
-    private boolean checker(char col, char row) {
-        return get(col, row) == EMPTY;
-    }
-
-    /**
-     * Given COL, MYPIECE, BOARD, and ROW returns whether the tile is empty.
+     * Add all legal captures from the position with linearized index K
+     * to MOVES.
      */
-    private boolean firstjumpchecker(char col, char row,
-        PieceColor mypiece, PieceColor[] board) {
-        return validSquare(col, row)
-                && board[index(col, row)]
-                != mypiece && board[index(col, row)] != EMPTY;
+    void getJumps(ArrayList<Move> moves, int k) {
+        if (validSquare(k) && get(k) == whoseMove()) {
+            _jumpPath[0] = k;
+            getJumps(moves, k, 1);
+        }
     }
 
     /**
-     * Given COL, BOARD, and ROW returns whether the tile is empty.
+     * Add to MOVES every complete capture sequence that continues the
+     * first LENGTH squares of _jumpPath with further jumps by the piece
+     * at K, the last of those squares.  Each jump is made in place on my
+     * piece masks while its continuations are found and then unmade, so
+     * that no board is copied, and a sequence becomes a Move only once
+     * it can be extended no further.
      */
-    private boolean secondjumpchecker(char col,
-        char row, PieceColor[] board) {
-        return validSquare(col, row)
-              && board[index(col, row)] == EMPTY;
+    private void getJumps(ArrayList<Move> moves, int k, int length) {
+        int white = _white, black = _black;
+        int theirs = pieces(whoseMove().opposite());
+        int occupied = white | black;
+        boolean extended = false;
+        for (int d : JUMP_DIRECTIONS[k]) {
+            int over = JUMP_OVER[k][d], land = JUMP_LANDING[k][d];
+            if ((theirs & (1 << over)) == 0 || (occupied & (1 << land)) != 0) {
+                continue;
+            }
+            extended = true;
+            _jumpPath[length] = land;
+            int from = 1 << k, to = 1 << land, captured = ~(1 << over);
+            _white = movePiece(white, from, to) & captured;
+            _black = movePiece(black, from, to) & captured;
+            getJumps(moves, land, length + 1);
+            _white = white;
+            _black = black;
+        }
+        if (!extended && length > 1) {
+            moves.add(jumpSequence(length));
+        }
     }
 
     /**
-     * Given K, COL, ROW, J, and STEP returns a move.
+     * Add to MOVES every complete capture sequence by the piece at K that
+     * continues PACKED, a packed jump that ends at K, as for
+     * getJumps(ArrayList, int, int).
      */
-    private Move get(String k, char col, char row, int j, int step) {
-        char west = (char) (col(j) - step);
-        char east = (char) (col(j) + step);
-        char north = (char) (row(j) + step);
-        char south = (char) (row(j) - step);
-        if (k.equals("west")) {
-            return Move.move(col, row, west, row);
-        } else if (k.equals("east")) {
-            return Move.move(col, row, east, row);
-        } else if (k.equals("north")) {
-            return Move.move(col, row, col, north);
-        } else if (k.equals("south")) {
-            return Move.move(col, row, col, south);
-        } else if (k.equals("southwest")) {
-            return Move.move(col, row, west, south);
-        } else if (k.equals("northwest")) {
-            return Move.move(col, row, west, north);
-        } else if (k.equals("southeast")) {
-            return Move.move(col, row, east, south);
-        } else {
-            return Move.move(col, row, east, north);
+    private void getJumps(MoveList moves, int k, long packed) {
+        int white = _white, black = _black;
+        int theirs = pieces(whoseMove().opposite());
+        int occupied = white | black;
+        boolean extended = false;
+        for (int d : JUMP_DIRECTIONS[k]) {
+            int over = JUMP_OVER[k][d], land = JUMP_LANDING[k][d];
+            if ((theirs & (1 << over)) == 0 || (occupied & (1 << land)) != 0) {
+                continue;
+            }
+            extended = true;
+            int from = 1 << k, to = 1 << land, captured = ~(1 << over);
+            _white = movePiece(white, from, to) & captured;
+            _black = movePiece(black, from, to) & captured;
+            getJumps(moves, land, packLeg(packed, d));
+            _white = white;
+            _black = black;
+        }
+        if (!extended && packedLegs(packed) > 0) {
+            moves.add(packed);
         }
     }
 
     /**
-     * Add all legal captures from the position with linearized index K
-     * to MOVES.
+     * Return the jump through the first LENGTH squares of _jumpPath.
      */
-    private void getJumps(ArrayList<Move> moves, int k) {
-        PieceColor mypiece = get(k);
-        PieceColor[] boardCopy = newboard(_board);
-        if (validSquare(k) && mypiece != EMPTY && whoseMove().equals(mypiece)) {
-            piecesjump(moves, k, boardCopy);
-        }
-    }
-
-    /** Add all moves from the north given MOVES, K, MYPIECE,
-     * COPYBOARD. */
-    private void
-        northjump(ArrayList<Move> moves,
-                  int k, PieceColor[] copyboard) {
-        PieceColor mypiece = whoseMove();
-        char north2 = (char) (row(k) + 2);
-        char north = (char) (row(k) + 1);
-        char col = col(k);
-        char row = row(k);
-        if (firstjumpchecker(col, north, mypiece, copyboard)
-                && secondjumpchecker(col, north2, copyboard)) {
-            Move created = get("north", col, row, k, 2);
-            moves.add(created);
-            int i = index(col, north2);
-            piecesjump(moves, i, boardcopy(created, copyboard));
-        }
-    }
-    /** Add all moves from the south given MOVES, K, MYPIECE,
-     * COPYBOARD. */
-    private void
-        southjump(ArrayList<Move> moves,
-                  int k, PieceColor[] copyboard) {
-        PieceColor mypiece = whoseMove();
-        char col = col(k);
-        char row = row(k);
-        char south = (char) (row(k) - 1);
-        char south2 = (char) (row(k) - 2);
-        if (firstjumpchecker(col, south, mypiece, copyboard)
-                && secondjumpchecker(col, south2, copyboard)) {
-            Move created = get("south", col, row, k, 2);
-            moves.add(created);
-            int i = index(col, south2);
-            piecesjump(moves, i, boardcopy(created, copyboard));
-        }
-    }
-    /** Add all moves from the west given MOVES, K, MYPIECE,
-     * COPYBOARD. */
-    private void
-        westjump(ArrayList<Move> moves,
-                 int k, PieceColor[] copyboard) {
-        PieceColor mypiece = whoseMove();
-        char west = (char) (col(k) - 1);
-        char west2 = (char) (col(k) - 2);
-        char col = col(k);
-        char row = row(k);
-        if (firstjumpchecker(west, row, mypiece, copyboard)
-                && secondjumpchecker(west2, row, copyboard)
-                && validSquare(west, row)
-                && validSquare(west2, row)) {
-            Move created = get("west", col, row, k, 2);
-            moves.add(created);
-            int i = index(west2, row);
-            piecesjump(moves, i, boardcopy(created, copyboard));
-        }
-    }
-    /** Add all moves from the east given MOVES, K, MYPIECE,
-     * COPYBOARD. */
-    private void
-        eastjump(ArrayList<Move> moves,
-                 int k, PieceColor[] copyboard) {
-        PieceColor mypiece = whoseMove();
-        char col = col(k);
-        char row = row(k);
-        char east = (char) (col(k) + 1);
-        char east2 = (char) (col(k) + 2);
-        if (firstjumpchecker(east, row, mypiece, copyboard)
-                && secondjumpchecker(east2, row, copyboard)
-                && validSquare(east, row)
-                && validSquare(east2, row)) {
-            Move created = get("east", col, row, k, 2);
-            moves.add(created);
-            int i = index(east2, row);
-            piecesjump(moves, i, boardcopy(created, copyboard));
-        }
-    }
-    /** Add all moves from the southwest given MOVES, K, MYPIECE,
-     * COPYBOARD. */
-    private void
-        southwestjump(ArrayList<Move> moves,
-                      int k, PieceColor[] copyboard) {
-        PieceColor mypiece = whoseMove();
-        char col = col(k);
-        char row = row(k);
-        char south = (char) (row(k) - 1);
-        char south2 = (char) (row(k) - 2);
-        char west = (char) (col(k) - 1);
-        char west2 = (char) (col(k) - 2);
-        if (firstjumpchecker(west, south, mypiece, copyboard)
-                && secondjumpchecker(west2, south2, copyboard)
-                && validSquare(west, south)
-                && validSquare(west2, south2)) {
-            Move created = get("southwest", col, row, k, 2);
-            moves.add(created);
-            int i = index(west2, south2);
-            piecesjump(moves, i, boardcopy(created, copyboard));
-        }
-
-    }
-    /** Add all moves from the southeast given MOVES, K, MYPIECE,
-     * COPYBOARD. */
-    private void
-         southeastjump(ArrayList<Move> moves,
-                       int k, PieceColor[] copyboard) {
-        PieceColor mypiece = whoseMove();
-        char col = col(k);
-        char row = row(k);
-        char south = (char) (row(k) - 1);
-        char south2 = (char) (row(k) - 2);
-        char east = (char) (col(k) + 1);
-        char east2 = (char) (col(k) + 2);
-        if (firstjumpchecker(east, south, mypiece, copyboard)
-                && secondjumpchecker(east2, south2, copyboard)
-                && validSquare(east, south)
-                && validSquare(east2, south2)) {
-            Move created = get("southeast", col, row, k, 2);
-            moves.add(created);
-            int i = index(east2, south2);
-            piecesjump(moves, i, boardcopy(created, copyboard));
-        }
-    }
-    /** Add all moves from the northeast given MOVES, K, MYPIECE,
-     * COPYBOARD. */
-    private void
-        northeastjump(ArrayList<Move> moves,
-                      int k, PieceColor[] copyboard) {
-        PieceColor mypiece = whoseMove();
-        char col = col(k);
-        char row = row(k);
-        char north2 = (char) (row(k) + 2);
-        char north = (char) (row(k) + 1);
-        char east = (char) (col(k) + 1);
-        char east2 = (char) (col(k) + 2);
-        if (firstjumpchecker(east, north, mypiece, copyboard)
-                && secondjumpchecker(east2, north2, copyboard)
-                && validSquare(east, north)
-                && validSquare(east2, north2)) {
-            Move created = get("northeast", col, row, k, 2);
-            moves.add(created);
-            int i = index(east2, north2);
-            piecesjump(moves, i, boardcopy(created, copyboard));
-        }
-    }
-    /** Add all moves from the northwest given MOVES, K, MYPIECE,
-     * COPYBOARD. */
-    private void
-        northwestjump(ArrayList<Move> moves, int k,
-                      PieceColor[] copyboard) {
-        PieceColor mypiece = whoseMove();
-        char col = col(k);
-        char row = row(k);
-        char west = (char) (col(k) - 1);
-        char west2 = (char) (col(k) - 2);
-        char north2 = (char) (row(k) + 2);
-        char north = (char) (row(k) + 1);
-        if (firstjumpchecker(west, north, mypiece, copyboard)
-                && secondjumpchecker(west2, north2, copyboard)
-                && validSquare(west2, north2)
-                && validSquare(west, north)) {
-            Move created = get("northwest", col, row, k, 2);
-            moves.add(created);
-            int i = index(west2, north2);
-            piecesjump(moves, i, boardcopy(created, copyboard));
-        }
-    }
-
-    /**
-     * Gets all MOVES for whitepieces using index K, COPYBOARD
-     * and MYPIECE. Return arraylist MOVES.
-     */
-    private ArrayList<Move>
-        piecesjump(ArrayList<Move> moves, int k, PieceColor[] copyboard) {
-        northjump(moves, k, copyboard);
-        southjump(moves, k, copyboard);
-        westjump(moves, k, copyboard);
-        eastjump(moves, k, copyboard);
-        if (k % 2 == 0) {
-            southeastjump(moves, k, copyboard);
-            northwestjump(moves, k, copyboard);
-            southwestjump(moves, k, copyboard);
-            northeastjump(moves, k, copyboard);
-        }
-        return moves;
-    }
-
-    /** Copys board using MOV and PREVBOARD, RETURNS
-     * a BOARD.*/
-    private PieceColor[] boardcopy(Move mov,
-                                   PieceColor[] prevBoard) {
-
-        PieceColor[] createdBoard = new PieceColor[MAX_INDEX + 1];
-        for (int i = 0; i <= MAX_INDEX; i++) {
-            createdBoard[i] = prevBoard[i];
-        }
-        editBoard(createdBoard, mov);
-        createdBoard[mov.jumpedIndex()] = EMPTY;
-        return createdBoard;
+    private Move jumpSequence(int length) {
+        Move result = null;
+        for (int i = length - 1; i > 0; i -= 1) {
+            int from = _jumpPath[i - 1], to = _jumpPath[i];
+            result = Move.move(col(from), row(from), col(to), row(to),
+                               result);
+        }
+        return result;
     }
 
     /**
@@ -715,10 +873,16 @@ class Board extends Observable {
      * linearized index K.
      */
     boolean jumpPossible(int k) {
-        ArrayList<Move> check = new ArrayList<>();
-        getJumps(check, k);
-        if (check.size() > 0) {
-            return true;
+        if (!validSquare(k) || get(k) != whoseMove()) {
+            return false;
+        }
+        int theirs = pieces(whoseMove().opposite());
+        int empty = pieces(EMPTY);
+        for (int d : JUMP_DIRECTIONS[k]) {
+            if ((theirs & (1 << JUMP_OVER[k][d])) != 0
+                && (empty & (1 << JUMP_LANDING[k][d])) != 0) {
+                return true;
+            }
         }
         return false;
     }
@@ -727,14 +891,97 @@ class Board extends Observable {
      * Return true iff a jump is possible from the current board.
      */
     boolean jumpPossible() {
-        for (int k = 0; k <= MAX_INDEX; k += 1) {
-            if (jumpPossible(k)) {
+        if (!whoseMove().isPiece()) {
+            return false;
+        }
+        int mine = pieces(whoseMove());
+        int theirs = pieces(whoseMove().opposite());
+        int empty = pieces(EMPTY);
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            int jumpers = mine & JUMP_SOURCES[d]
+                & shift(theirs, -OFFSET[d]) & shift(empty, -2 * OFFSET[d]);
+            if (jumpers != 0) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Return true iff the restrictions on sideways moves currently bar
+     * some piece from stepping into an empty square beside it.
+     */
+    boolean sidewaysRestricted() {
+        int occupied = _white | _black;
+        int empty = ~occupied & ALL_SQUARES;
+        int barred = (_barredFromEast & shift(occupied, -1))
+            | (_barredFromWest & shift(occupied, 1));
+        return (barred & empty) != 0;
+    }
+
+    /**
+     * Return the mask of squares from which a piece of COLOR may step to
+     * the square with linearized index K, ignoring the restrictions on
+     * sideways moves.
+     */
+    static int stepSources(PieceColor color, int k) {
+        return STEP_FROM[color == WHITE ? 0 : 1][k];
+    }
+
+    /**
+     * Return the number of non-capturing moves that the pieces of COLOR
+     * would have if it were COLOR's move, ignoring the restrictions on
+     * sideways moves and the obligation to capture.
+     */
+    int mobility(PieceColor color) {
+        int[] sources = STEP_SOURCES[color == WHITE ? 0 : 1];
+        int mine = pieces(color);
+        int empty = pieces(EMPTY);
+        int result = 0;
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            result += Integer.bitCount(mine & sources[d]
+                                       & shift(empty, -OFFSET[d]));
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of pieces of COLOR that the opposing player
+     * could capture by a single jump if it were that player's move.
+     */
+    int threatened(PieceColor color) {
+        int mine = pieces(color);
+        int theirs = pieces(color.opposite());
+        int empty = pieces(EMPTY);
+        int result = 0;
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            int jumpers = theirs & JUMP_SOURCES[d]
+                & shift(mine, -OFFSET[d]) & shift(empty, -2 * OFFSET[d]);
+            result |= shift(jumpers, OFFSET[d]);
+        }
+        return Integer.bitCount(result);
+    }
+
+    /**
+     * Return MASK with every square moved by OFFSET linearized index
+     * positions, dropping squares that fall off the board.
+     */
+    private static int shift(int mask, int offset) {
+        if (offset >= 0) {
+            return (mask << offset) & ALL_SQUARES;
+        } else {
+            return mask >>> -offset;
+        }
+    }
+
+    /**
+     * Return true iff column C and row R (both numbered from 0) lie
+     * on the board.
+     */
+    private static boolean onBoard(int c, int r) {
+        return 0 <= c && c < SIDE && 0 <= r && r < SIDE;
+    }
+
     /**
      * Return the color of the player who has the next move.  The
      * value is arbitrary if gameOver().
@@ -747,7 +994,7 @@ class Board extends Observable {
      * MOV.*/
     private void reset(Move mov) {
         int index = index(mov.col0(), mov.row0());
-        _h[index][0] = mov.col1(); _h[index][1] = mov.row1();
+        setRestriction(index, mov.col1(), mov.row1());
         char col = mov.col0(); char left = (char) (mov.col0() + 1);
         int left2 = index + 1; int right2 = index - 1;
         char right = (char) (mov.col0() - 1); char row = mov.row0();
@@ -755,50 +1002,50 @@ class Board extends Observable {
         if (mov.isLeftMove()) {
             if (validSquare(left, row)) {
                 if (_h[left2][0] == col && _h[left2][1] == row) {
-                    _h[left2][0] = 'g'; _h[left2][1] = '8';
+                    setRestriction(left2, 'g', '8');
                 }
             }
         }
         if (mov.isRightMove()) {
             if (validSquare(right, row)) {
                 if (_h[right2][0] == col && _h[right2][1] == row) {
-                    _h[right2][0] = 'g'; _h[right2][1] = '8';
+                    setRestriction(right2, 'g', '8');
                 }
             }
         }
         if (mov.isJump()) {
             if (validSquare(left, row)) {
                 if (_h[left2][0] == col && _h[left2][1] == row) {
-                    _h[left2][0] = 'g'; _h[left2][1] = '8';
+                    setRestriction(left2, 'g', '8');
                 }
             }
             if (validSquare(right, row)) {
                 if (_h[right2][0] == col && _h[right2][1] == row) {
-                    _h[right2][0] = 'g'; _h[right2][1] = '8';
+                    setRestriction(right2, 'g', '8');
                 }
             }
             if (validSquare(right, up)) {
                 int upright = index(right, up) - 1;
                 if (_h[upright][0] == right && _h[upright][1] == up) {
-                    _h[upright][0] = 'g'; _h[upright][1] = '8';
+                    setRestriction(upright, 'g', '8');
                 }
             }
             if (validSquare(left, up)) {
                 int upleft = index(left, up) - 1;
                 if (_h[upleft][0] == left && _h[upleft][1] == up) {
-                    _h[upleft][0] = 'g'; _h[upleft][1] = '8';
+                    setRestriction(upleft, 'g', '8');
                 }
             }
             if (validSquare(right, down)) {
                 int downright = index(right, down) + 1;
                 if (_h[downright][0] == right && _h[downright][1] == down) {
-                    _h[downright][0] = 'g'; _h[downright][1] = '8';
+                    setRestriction(downright, 'g', '8');
                 }
             }
             if (validSquare(left, down)) {
                 int downleft = index(left, down) + 1;
                 if (_h[downleft][0] == left && _h[downleft][1] == down) {
-                    _h[downleft][0] = 'g'; _h[downleft][1] = '8';
+                    setRestriction(downleft, 'g', '8');
                 }
             }
         }
@@ -810,42 +1057,161 @@ class Board extends Observable {
     void makeMove(Move mov) {
         try {
             assert legalMove(mov);
-            if (mov.jumpTail() == null) {
-                firstBoard.push(copyBoard(_board));
-            }
-            reset(mov);
-            if (!mov.isJump() && mov.jumpTail() == null) {
-                editBoard(_board, mov);
-            } else if (mov.isJump() && mov.jumpTail() == null) {
-                _board[mov.jumpedIndex()] = EMPTY;
-                editBoard(_board, mov);
-            } else {
-                _board[mov.jumpedIndex()] = EMPTY;
-                editBoard(_board, mov);
-                makeMove(mov.jumpTail());
-            }
-            if (mov.jumpTail() == null) {
-                nextMove();
+            beginUndoRecord();
+            for (Move leg = mov; leg != null; leg = leg.jumpTail()) {
+                reset(leg);
+                if (leg.isJump()) {
+                    set(leg.jumpedIndex(), EMPTY);
+                }
+                editBoard(leg);
             }
-            setChanged();
-            notifyObservers();
+            nextMove();
+            endUndoRecord();
+            announce();
         } catch (AssertionError e) {
             System.out.println("Illegal move");
         }
     }
 
-    /** Edits Board based on BOARD and MOV. **/
-    void editBoard(PieceColor[] board, Move mov) {
-        board[mov.toIndex()] = board[mov.fromIndex()];
-        board[mov.fromIndex()] = EMPTY;
+    /**
+     * Make the packed move MOV (see Move.packed) on this Board, assuming
+     * it is legal.  The effect is the same as that of makeMove(Move), and
+     * undo undoes it, but it creates no multi-jump Moves.
+     */
+    void makeMove(long mov) {
+        assert legalMove(mov);
+        beginUndoRecord();
+        boolean jump = packedIsJump(mov);
+        int k = packedFrom(mov);
+        for (int i = 0; i < packedLegs(mov); i += 1) {
+            int d = packedDirection(mov, i);
+            int to = jump ? JUMP_LANDING[k][d] : STEP_TARGET[k][d];
+            Move leg = Move.move(k, to);
+            reset(leg);
+            if (jump) {
+                set(JUMP_OVER[k][d], EMPTY);
+            }
+            editBoard(leg);
+            k = to;
+        }
+        nextMove();
+        endUndoRecord();
+        announce();
+    }
+
+    /** Edits this Board based on MOV. **/
+    void editBoard(Move mov) {
+        set(mov.toIndex(), get(mov.fromIndex()));
+        set(mov.fromIndex(), EMPTY);
+    }
+
+    /** Return piece mask MASK after moving the contents of the square
+     *  whose bit is FROM to the square whose bit is TO. */
+    private static int movePiece(int mask, int from, int to) {
+        if ((mask & from) != 0) {
+            return (mask & ~from) | to;
+        } else {
+            return mask & ~to;
+        }
+    }
+
+    /**
+     * Return the Zobrist key of the current position, which depends on
+     * the pieces, the side to move, and which horizontal moves are
+     * barred.  It is maintained incrementally by all changes to me.
+     */
+    long key() {
+        return _key;
+    }
+
+    /**
+     * Return the Zobrist key of the current position, computed from
+     * scratch.
+     */
+    private long computeKey() {
+        long key = whoseMove() == BLACK ? BLACK_TO_MOVE_KEY : 0;
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            key ^= pieceKey(k) ^ restrictionKey(k);
+        }
+        return key;
+    }
+
+    /**
+     * Return the contribution to _key of the contents of square K.
+     */
+    private long pieceKey(int k) {
+        return pieceKey(k, get(k));
     }
 
-    /** Returns a board extracted from ARRAY. **/
-    private PieceColor[] newboard(PieceColor[] array) {
-        for (int i = 0; i < MAX_INDEX + 1; i++) {
-            newBoard[i] = array[i];
+    /**
+     * Return the contribution to _key of piece P on square K.
+     */
+    private static long pieceKey(int k, PieceColor p) {
+        switch (p) {
+        case WHITE:
+            return PIECE_KEYS[0][k];
+        case BLACK:
+            return PIECE_KEYS[1][k];
+        default:
+            return 0;
         }
-        return newBoard;
+    }
+
+    /**
+     * Return the contribution to _key of _h[K], which is non-zero only
+     * if it bars the piece beside square K from moving into it.
+     */
+    private long restrictionKey(int k) {
+        int side = restrictionSide(k);
+        return side < 0 ? 0 : RESTRICTION_KEYS[k][side];
+    }
+
+    /**
+     * Return 0 if _h[K] bars the piece to the east of square K from
+     * moving into it, 1 if it bars the piece to the west, and -1 if
+     * neither.
+     */
+    private int restrictionSide(int k) {
+        if (_h[k][1] != row(k)) {
+            return -1;
+        } else if (_h[k][0] == col(k) + 1) {
+            return 0;
+        } else if (_h[k][0] == col(k) - 1) {
+            return 1;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Bring bit K of _barredFromEast and _barredFromWest up to date with
+     * _h[K].
+     */
+    private void updateBarred(int k) {
+        int side = restrictionSide(k);
+        _barredFromEast &= ~(1 << k);
+        _barredFromWest &= ~(1 << k);
+        if (side == 0) {
+            _barredFromEast |= 1 << k;
+        } else if (side == 1) {
+            _barredFromWest |= 1 << k;
+        }
+    }
+
+    /**
+     * Set _h[K] to (COL, ROW), keeping _key up to date and logging the
+     * old value for undo.
+     */
+    private void setRestriction(int k, char col, char row) {
+        reserveUndo(2);
+        _undoLog[_undoSize] = k;
+        _undoLog[_undoSize + 1] = (_h[k][0] << 16) | _h[k][1];
+        _undoSize += 2;
+        _key ^= restrictionKey(k);
+        _h[k][0] = col;
+        _h[k][1] = row;
+        _key ^= restrictionKey(k);
+        updateBarred(k);
     }
 
     @Override
@@ -903,40 +1269,133 @@ class Board extends Observable {
     public boolean equals(Object o) {
         if (o instanceof Board) {
             Board other = (Board) o;
-            return (toString().equals(other.toString())
-                    && whoseMove() == other.whoseMove()
-                    && gameOver() == other.gameOver());
+            return key() == other.key()
+                && _white == other._white && _black == other._black
+                && whoseMove() == other.whoseMove()
+                && gameOver() == other.gameOver();
         }
         return false;
     }
 
-    /** HASHCODE to override
-     * RETURNS int. **/
+    @Override
     public int hashCode() {
-        return super.hashCode();
+        return (int) (_key ^ (_key >>> 32));
     }
 
     /** Sets Game over to true. **/
     public void setgameOver() {
         _gameOver = true;
+        _version += 1;
     }
+
     /**
-     * One cannot create arrays of ArrayList<Move>, so we introduce
-     * a specialized private list type for this purpose.
+     * Bring my contents up to date with the board I view, if I am a
+     * constant view.
      */
-    private static class MoveList extends ArrayList<Move> {
+    void refresh() {
+    }
+    /**
+     * A list of packed moves (see Move.packed), kept in an array of
+     * longs so that adding a move creates no objects.
+     */
+    static class MoveList {
+        /**
+         * Initial capacity of a list.
+         */
+        private static final int INITIAL_CAPACITY = 32;
+        /**
+         * My moves, in _moves[0 .. _size-1].
+         */
+        private long[] _moves = new long[INITIAL_CAPACITY];
+        /**
+         * Number of moves in me.
+         */
+        private int _size;
+
+        /**
+         * Return the number of moves in me.
+         */
+        int size() {
+            return _size;
+        }
+
+        /**
+         * Return my move number I (from 0).
+         */
+        long get(int i) {
+            assert i < _size;
+            return _moves[i];
+        }
+
+        /**
+         * Replace my move number I (from 0) with MOV.
+         */
+        void set(int i, long mov) {
+            assert i < _size;
+            _moves[i] = mov;
+        }
+
+        /**
+         * Add MOV to my end.
+         */
+        void add(long mov) {
+            if (_size == _moves.length) {
+                _moves = Arrays.copyOf(_moves, 2 * _size);
+            }
+            _moves[_size] = mov;
+            _size += 1;
+        }
+
+        /**
+         * Return true iff MOV is one of my moves.
+         */
+        boolean contains(long mov) {
+            for (int i = 0; i < _size; i += 1) {
+                if (_moves[i] == mov) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Remove all my moves.
+         */
+        void clear() {
+            _size = 0;
+        }
+
+        /**
+         * Return my moves as a list of Moves.
+         */
+        ArrayList<Move> toMoves() {
+            ArrayList<Move> result = new ArrayList<>(_size);
+            for (int i = 0; i < _size; i += 1) {
+                result.add(unpack(_moves[i]));
+            }
+            return result;
+        }
     }
 
     /**
-     * A read-only view of a Board.
+     * A read-only view of a Board, which copies it before being read
+     * whenever it has changed since the last copy.
      */
-    private class ConstantBoard extends Board implements Observer {
+    private class ConstantBoard extends Board {
         /**
          * A constant view of this Board.
          */
         ConstantBoard() {
             super(Board.this);
-            Board.this.addObserver(this);
+            _copied = Board.this._version;
+        }
+
+        @Override
+        void refresh() {
+            if (_copied != Board.this._version) {
+                _copied = Board.this._version;
+                super.copy(Board.this);
+            }
         }
 
         @Override
@@ -949,11 +1408,26 @@ class Board extends Observable {
             assert false;
         }
 
+        @Override
+        void setPieces(String str, PieceColor nextMove) {
+            assert false;
+        }
+
+        @Override
+        void setPieces(int white, int black, PieceColor nextMove) {
+            assert false;
+        }
+
         @Override
         void makeMove(Move move) {
             assert false;
         }
 
+        @Override
+        void makeMove(long move) {
+            assert false;
+        }
+
         /**
          * Undo the last move.
          */
@@ -963,10 +1437,101 @@ class Board extends Observable {
         }
 
         @Override
-        public void update(Observable obs, Object arg) {
-            super.copy((Board) obs);
-            setChanged();
-            notifyObservers(arg);
+        public void setgameOver() {
+            assert false;
         }
+
+        @Override
+        boolean gameOver() {
+            refresh();
+            return super.gameOver();
+        }
+
+        @Override
+        PieceColor get(int k) {
+            refresh();
+            return super.get(k);
+        }
+
+        @Override
+        int pieces(PieceColor color) {
+            refresh();
+            return super.pieces(color);
+        }
+
+        @Override
+        PieceColor whoseMove() {
+            refresh();
+            return super.whoseMove();
+        }
+
+        @Override
+        long key() {
+            refresh();
+            return super.key();
+        }
+
+        @Override
+        boolean legalMove(Move mov) {
+            refresh();
+            return super.legalMove(mov);
+        }
+
+        @Override
+        boolean legalMove(long mov) {
+            refresh();
+            return super.legalMove(mov);
+        }
+
+        @Override
+        void getMoves(ArrayList<Move> moves) {
+            refresh();
+            super.getMoves(moves);
+        }
+
+        @Override
+        void getMoves(MoveList moves) {
+            refresh();
+            super.getMoves(moves);
+        }
+
+        @Override
+        void getJumps(ArrayList<Move> moves, int k) {
+            refresh();
+            super.getJumps(moves, k);
+        }
+
+        @Override
+        boolean checkJump(Move mov, boolean allowPartial) {
+            refresh();
+            return super.checkJump(mov, allowPartial);
+        }
+
+        @Override
+        boolean jumpPossible(int k) {
+            refresh();
+            return super.jumpPossible(k);
+        }
+
+        @Override
+        boolean jumpPossible() {
+            refresh();
+            return super.jumpPossible();
+        }
+
+        @Override
+        boolean sidewaysRestricted() {
+            refresh();
+            return super.sidewaysRestricted();
+        }
+
+        @Override
+        public int hashCode() {
+            refresh();
+            return super.hashCode();
+        }
+
+        /** Value of Board.this._version when I last copied it. */
+        private int _copied;
     }
 }
@@ -2,7 +2,13 @@ package qirkat;
 
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests of the Board class.
@@ -106,6 +112,233 @@ public class BoardTest {
         makeMoves(b0, GAME6);
 
     }
+    @Test
+    public void testNumber() {
+        Board b0 = new Board();
+        assertEquals(12, b0.number(PieceColor.WHITE));
+        assertEquals(12, b0.number(PieceColor.BLACK));
+        assertEquals(1, b0.number(PieceColor.EMPTY));
+        b0.setPieces("wb----b-b--b----bb---b---", PieceColor.WHITE);
+        assertEquals(1, b0.number(PieceColor.WHITE));
+        assertEquals(7, b0.number(PieceColor.BLACK));
+        assertEquals(PieceColor.BLACK, b0.get('b', '1'));
+        assertEquals(PieceColor.EMPTY, b0.get('c', '1'));
+    }
+
+    @Test
+    public void testJumpSequences() {
+        Board b0 = new Board();
+        b0.setPieces("-wwww--bb-b--wwwbww-wb-wb", PieceColor.BLACK);
+        ArrayList<Move> moves = b0.getMoves();
+        assertEquals(2, moves.size());
+        assertTrue(moves.contains(Move.parseMove("e5-c3-c5-e5")));
+        assertTrue(moves.contains(Move.parseMove("e5-c5-c3-e5")));
+    }
+
+    @Test
+    public void testJumpsAllocationFree() {
+        final int iterations = 10000;
+        Board b0 = new Board();
+        b0.setPieces("wb----b-b--b----bb---b---", PieceColor.WHITE);
+        ArrayList<Move> legs = new ArrayList<>();
+        for (int i = 0; i < iterations; i += 1) {
+            legs.clear();
+            b0.getJumps(legs, 0);
+        }
+        assertTrue(legs.contains(Move.parseMove("a1-c1-a3-c3-a5-c5-c3-e1")));
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < iterations; i += 1) {
+            legs.clear();
+            b0.getJumps(legs, 0);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        assertTrue("jump generation allocated " + allocated + " bytes",
+                   allocated < iterations);
+    }
+
+    @Test
+    public void testMakeUndoAllocationFree() {
+        final int iterations = 10000;
+        Board b0 = new Board();
+        b0.setSilent(true);
+        long mov = b0.getMoves().get(0).packed();
+        for (int i = 0; i < iterations; i += 1) {
+            b0.makeMove(mov);
+            b0.undo();
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < iterations; i += 1) {
+            b0.makeMove(mov);
+            b0.undo();
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        assertTrue("make/undo allocated " + allocated + " bytes",
+                   allocated < iterations);
+    }
+
+    @Test
+    public void testNotifications() {
+        Board b0 = new Board();
+        int[] count = new int[1];
+        b0.addObserver((obs, arg) -> count[0] += 1);
+        b0.makeMove(Move.parseMove("c2-c3"));
+        assertEquals(1, count[0]);
+        b0.clear();
+        assertEquals(2, count[0]);
+        b0.setSilent(true);
+        b0.makeMove(Move.parseMove("c2-c3"));
+        b0.undo();
+        assertEquals(2, count[0]);
+        b0.setSilent(false);
+        b0.makeMove(Move.parseMove("c2-c3"));
+        assertEquals(3, count[0]);
+    }
+
+    @Test
+    public void testConstantView() {
+        Board b0 = new Board();
+        Board view = b0.constantView();
+        assertEquals(b0.toString(), view.toString());
+        b0.makeMove(Move.parseMove("c2-c3"));
+        assertEquals(PieceColor.WHITE, view.get('c', '3'));
+        assertEquals(PieceColor.BLACK, view.whoseMove());
+        assertEquals(b0.key(), view.key());
+        assertEquals(b0.getMoves(), view.getMoves());
+        b0.undo();
+        assertEquals(PieceColor.EMPTY, view.get('c', '3'));
+        Board b1 = new Board();
+        b1.setPieces("-----  -----  --w--  --b--  -----", PieceColor.BLACK);
+        b0.copy(b1);
+        assertEquals(b1, view);
+        assertEquals(1, view.number(PieceColor.WHITE));
+        assertTrue(view.jumpPossible());
+        assertEquals(view, new Board(view));
+        b1.setPieces("-----  -----  -----  -----  ----b", PieceColor.WHITE);
+        b0.copy(b1);
+        assertFalse(view.gameOver());
+        assertTrue(b0.getMoves().isEmpty());
+        assertTrue(view.gameOver());
+        b0.copy(b1);
+        assertFalse(view.gameOver());
+        b0.setgameOver();
+        assertTrue(view.gameOver());
+    }
+
+    @Test
+    public void testKey() {
+        String start = "ww--- ----- ----- ----- ---bb";
+        Board b0 = new Board();
+        b0.setPieces(start, PieceColor.WHITE);
+        makeMoves(b0, new String[] { "a1-a2", "d5-d4", "b1-b2", "e5-e4" });
+        Board b1 = new Board();
+        b1.setPieces(start, PieceColor.WHITE);
+        makeMoves(b1, new String[] { "b1-b2", "e5-e4", "a1-a2", "d5-d4" });
+        Board b2 = new Board();
+        b2.setPieces("----- ww--- ----- ---bb -----", PieceColor.WHITE);
+        assertEquals(b0.key(), b1.key());
+        assertEquals(b2.key(), b0.key());
+        assertEquals(b2, b0);
+        assertEquals(b2.hashCode(), b0.hashCode());
+        makeMoves(b0, new String[] { "b2-c2" });
+        makeMoves(b2, new String[] { "b2-c2" });
+        assertEquals(b2.key(), b0.key());
+        assertTrue(b0.key() != b1.key());
+        b0.undo();
+        assertEquals(b1.key(), b0.key());
+        Board b3 = new Board();
+        b3.setPieces("----- w-w-- ----- ---bb -----", PieceColor.BLACK);
+        assertTrue("restriction not in key", b3.key() != b2.key());
+        assertTrue(!b3.equals(b2));
+    }
+
+    @Test
+    public void testPackedMoves() {
+        Random random = new Random(1);
+        for (int game = 0; game < 20; game += 1) {
+            Board b0 = new Board();
+            Board b1 = new Board();
+            Board.MoveList packed = new Board.MoveList();
+            while (true) {
+                ArrayList<Move> moves = b0.getMoves();
+                packed.clear();
+                b1.getMoves(packed);
+                assertEquals(moves, packed.toMoves());
+                if (moves.isEmpty()) {
+                    break;
+                }
+                int i = random.nextInt(moves.size());
+                assertEquals(packed.get(i), moves.get(i).packed());
+                b0.makeMove(moves.get(i));
+                b1.makeMove(packed.get(i));
+                assertEquals(b0, b1);
+            }
+            b1.undo();
+            b0.undo();
+            assertEquals(b0, b1);
+        }
+    }
+
+    @Test
+    public void testLegalMove() {
+        Random random = new Random(2);
+        for (int game = 0; game < 20; game += 1) {
+            Board b0 = new Board();
+            ArrayList<Move> moves;
+            while (!(moves = b0.getMoves()).isEmpty()) {
+                for (char c0 = 'a'; c0 <= 'e'; c0 += 1) {
+                    for (char r0 = '1'; r0 <= '5'; r0 += 1) {
+                        for (char c1 = 'a'; c1 <= 'e'; c1 += 1) {
+                            for (char r1 = '1'; r1 <= '5'; r1 += 1) {
+                                Move mov = Move.move(c0, r0, c1, r1);
+                                assertEquals(mov.toString(),
+                                             moves.contains(mov),
+                                             b0.legalMove(mov));
+                            }
+                        }
+                    }
+                }
+                for (Move mov : moves) {
+                    assertTrue(b0.legalMove(mov));
+                    assertTrue(b0.legalMove(mov.packed()));
+                    if (mov.jumpTail() != null) {
+                        Move first = Move.move(mov.col0(), mov.row0(),
+                                               mov.col1(), mov.row1());
+                        assertTrue(!b0.legalMove(first));
+                        assertTrue(!b0.legalMove(first.packed()));
+                    }
+                }
+                b0.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    @Test
+    public void testUndoLog() {
+        Random random = new Random(3);
+        for (int game = 0; game < 20; game += 1) {
+            Board b0 = new Board();
+            ArrayList<Board> history = new ArrayList<>();
+            ArrayList<Move> moves;
+            while (!(moves = b0.getMoves()).isEmpty()) {
+                history.add(new Board(b0));
+                b0.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            for (int i = history.size() - 1; i >= 0; i -= 1) {
+                b0.undo();
+                assertEquals(history.get(i), b0);
+                assertEquals(history.get(i).getMoves(), b0.getMoves());
+            }
+        }
+    }
+
     @Test
     public void testUndo() {
         Board b0 = new Board();
@@ -118,5 +351,17 @@ public class BoardTest {
         assertEquals(b1, b2);
 
     }
-}
 
+    @Test
+    public void testEvaluationTerms() {
+        Board b0 = new Board();
+        b0.setPieces("-------w----b----b-------", PieceColor.WHITE);
+        assertEquals(2, b0.mobility(PieceColor.WHITE));
+        assertEquals(6, b0.mobility(PieceColor.BLACK));
+        assertEquals(1, b0.threatened(PieceColor.WHITE));
+        assertEquals(0, b0.threatened(PieceColor.BLACK));
+        Board b1 = new Board();
+        assertEquals(b1.mobility(PieceColor.WHITE),
+                     b1.mobility(PieceColor.BLACK));
+    }
+}
@@ -78,7 +78,11 @@ class Command {
         PIECEMOVE("([a-e][1-5](?:-[a-e][1-5])+)"),
         /* Valid at any time. */
         LOAD("load\\s+(\\S+)"),
-        QUIT, CLEAR, DUMP, HELP,
+        PERFT("perft\\s+(\\d+)(?:\\s+(divide))?"),
+        TIME("time\\s+(\\d+)"),
+        THREADS("threads\\s+(\\d+)"),
+        PONDER("ponder\\s+(on|off)"),
+        QUIT, CLEAR, DUMP, HELP, STATS,
         /* Special "commands" internally generated. */
         /**
          * Syntax error in command.
@@ -66,6 +66,44 @@ public class CommandTest {
         checkError("clear foo");
     }
 
+    @Test
+    public void testPERFT() {
+        check("perft 5", PERFT, "5", null);
+        check("perft 3 divide", PERFT, "3", "divide");
+        checkError("perft");
+        checkError("perft x");
+        checkError("perft 3 foo");
+    }
+
+    @Test
+    public void testTIME() {
+        check("time 500", TIME, "500");
+        checkError("time");
+        checkError("time -1");
+        checkError("time 5 sec");
+    }
+
+    @Test
+    public void testTHREADS() {
+        check("threads 4", THREADS, "4");
+        checkError("threads");
+        checkError("threads four");
+    }
+
+    @Test
+    public void testPONDER() {
+        check("ponder on", PONDER, "on");
+        check("ponder off", PONDER, "off");
+        checkError("ponder");
+        checkError("ponder maybe");
+    }
+
+    @Test
+    public void testSTATS() {
+        check("stats", STATS);
+        checkError("stats all");
+    }
+
     @Test
     public void testMOVE() {
         check("a3-b3", PIECEMOVE, "a3-b3");
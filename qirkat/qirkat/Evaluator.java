@@ -0,0 +1,17 @@
+package qirkat;
+
+/** A static estimate of the value of positions, used by AIs at the
+ *  leaves of their searches.  An Evaluator may be used by several
+ *  searching threads at once.
+ *  @author Santhosh Subramanian
+ */
+interface Evaluator {
+
+    /** Return an estimate of the value of BOARD, a position that is not
+     *  over and in which the side to move has no capture, to the side to
+     *  move: positive if the position favors that side, and negative if
+     *  it favors its opponent.  The magnitude of the result must be far
+     *  less than Integer.MAX_VALUE. */
+    int score(Board board);
+
+}
@@ -24,6 +24,14 @@ import static qirkat.PieceColor.*;
  */
 class Game {
 
+    /**
+     * Default time allowed to an AI for each move (msec).
+     */
+    static final long DEFAULT_TIME_LIMIT = 1000;
+    /**
+     * Maximum number of threads an AI may use.
+     */
+    static final int MAX_THREADS = 256;
     /**
      * Mapping of command types to methods that process them.
      */
@@ -53,6 +61,42 @@ class Game {
      * Source of pseudo-random numbers (used by AIs).
      */
     private Random _randoms = new Random();
+    /**
+     * Size in megabytes and replacement policy of the transposition
+     * table of each AI.
+     */
+    private int _tableMegabytes = TranspositionTable.DEFAULT_MEGABYTES;
+    /** See _tableMegabytes. */
+    private TranspositionTable.Replacement _tablePolicy =
+        TranspositionTable.Replacement.AGED;
+    /**
+     * Time allowed to an AI for each move (msec).
+     */
+    private long _timeLimit = DEFAULT_TIME_LIMIT;
+    /**
+     * Number of threads each AI uses to search.
+     */
+    private int _threads = 1;
+    /**
+     * True iff AIs search during their opponents' turns.
+     */
+    private boolean _ponder;
+    /**
+     * Statistics of the last search by an AI, or null if none.
+     */
+    private SearchStats _stats;
+    /**
+     * Static evaluation used by AIs.
+     */
+    private Evaluator _evaluator = new WeightedEvaluator();
+    /**
+     * Opening book consulted by AIs, or null if none.
+     */
+    private OpeningBook _book;
+    /**
+     * Endgame tablebase consulted by AIs, or null if none.
+     */
+    private Tablebase _tablebase;
 
     {
         _commands.put(AUTO, this::doAuto);
@@ -65,6 +109,11 @@ class Game {
         _commands.put(SETBOARD, this::doSet);
         _commands.put(START, this::doStart);
         _commands.put(LOAD, this::doLoad);
+        _commands.put(PERFT, this::doPerft);
+        _commands.put(TIME, this::doTime);
+        _commands.put(THREADS, this::doThreads);
+        _commands.put(PONDER, this::doPonder);
+        _commands.put(STATS, this::doStats);
         _commands.put(QUIT, this::doQuit);
         _commands.put(ERROR, this::doError);
         _commands.put(EOF, this::doQuit);
@@ -114,7 +163,7 @@ class Game {
             } else {
                 black = new AI(this, BLACK);
             }
-            while (_state != SETUP && !_board.gameOver()) {
+            while (_state != SETUP && !_board.getMoves().isEmpty()) {
                 Move move;
 
                 if (_board.whoseMove() == WHITE) {
@@ -138,6 +187,8 @@ class Game {
                 }
             }
 
+            white.stop();
+            black.stop();
             if (_state == PLAYING) {
                 reportWinner();
             }
@@ -182,7 +233,7 @@ class Game {
                 case PIECEMOVE:
                     return cmnd;
                 case CLEAR:
-                    process();
+                    doClear(cmnd.operands());
                     break;
                 default:
                     _commands.get(cmnd.commandType()).accept(cmnd.operands());
@@ -195,6 +246,65 @@ class Game {
         return null;
     }
 
+    /**
+     * Set the transposition tables of AIs created from now on to occupy
+     * about MEGABYTES megabytes and to use replacement policy POLICY.
+     */
+    void setTable(int megabytes, TranspositionTable.Replacement policy) {
+        _tableMegabytes = megabytes;
+        _tablePolicy = policy;
+    }
+
+    /**
+     * Return a new, empty transposition table for an AI.
+     */
+    TranspositionTable newTable() {
+        return new TranspositionTable(_tableMegabytes, _tablePolicy);
+    }
+
+    /**
+     * Have AIs estimate the values of positions with EVALUATOR.
+     */
+    void setEvaluator(Evaluator evaluator) {
+        _evaluator = evaluator;
+    }
+
+    /**
+     * Return the static evaluation used by AIs.
+     */
+    Evaluator evaluator() {
+        return _evaluator;
+    }
+
+    /**
+     * Have AIs play from BOOK (null for none) when they can.
+     */
+    void setBook(OpeningBook book) {
+        _book = book;
+    }
+
+    /**
+     * Return the opening book consulted by AIs, or null if none.
+     */
+    OpeningBook book() {
+        return _book;
+    }
+
+    /**
+     * Have AIs estimate the values of positions from TABLEBASE (null
+     * for none) when it covers them.
+     */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /**
+     * Return the endgame tablebase consulted by AIs, or null if none.
+     */
+    Tablebase tablebase() {
+        return _tablebase;
+    }
+
     /**
      * Return random integer between 0 (inclusive) and MAX>0 (exclusive).
      */
@@ -270,6 +380,133 @@ class Game {
         }
     }
 
+    /**
+     * Perform the command 'perft OPERANDS[0] [OPERANDS[1]]': count the
+     * positions OPERANDS[0] moves from the current one, broken down by
+     * first move if OPERANDS[1] is "divide".
+     */
+    void doPerft(String[] operands) {
+        try {
+            Perft.run(_board, Integer.parseInt(operands[0]),
+                      operands[1] != null, _reporter);
+        } catch (NumberFormatException e) {
+            throw error("Depth too large: %s", operands[0]);
+        }
+    }
+
+    /**
+     * Perform the command 'time OPERANDS[0]': allow AIs OPERANDS[0]
+     * milliseconds per move.  The limit must be positive, since the
+     * depth of a search alone does not bound its time.
+     */
+    void doTime(String[] operands) {
+        long msec;
+        try {
+            msec = Long.parseLong(operands[0]);
+        } catch (NumberFormatException e) {
+            throw error("Time too large: %s", operands[0]);
+        }
+        if (msec < 1) {
+            throw error("Time must be positive: %s", operands[0]);
+        }
+        setTimeLimit(msec);
+    }
+
+    /**
+     * Perform the command 'threads OPERANDS[0]': have AIs search with
+     * OPERANDS[0] threads.
+     */
+    void doThreads(String[] operands) {
+        int threads;
+        try {
+            threads = Integer.parseInt(operands[0]);
+        } catch (NumberFormatException e) {
+            threads = 0;
+        }
+        if (threads < 1 || threads > MAX_THREADS) {
+            throw error("Number of threads must be 1 to %d", MAX_THREADS);
+        }
+        setThreads(threads);
+    }
+
+    /**
+     * Perform the command 'ponder OPERANDS[0]': have AIs ponder iff
+     * OPERANDS[0] is "on".
+     */
+    void doPonder(String[] operands) {
+        setPonder(operands[0].equals("on"));
+    }
+
+    /**
+     * Have AIs go on searching during their opponents' turns (see
+     * AI.myMove) iff PONDER.
+     */
+    void setPonder(boolean ponder) {
+        _ponder = ponder;
+    }
+
+    /**
+     * Return true iff AIs search during their opponents' turns.
+     */
+    boolean ponder() {
+        return _ponder;
+    }
+
+    /**
+     * Perform the command 'stats': print the statistics of the last
+     * search by an AI.
+     */
+    void doStats(String[] unused) {
+        if (_stats == null) {
+            throw error("No search yet");
+        }
+        _reporter.outcomeMsg("%s", _stats);
+        _reporter.outcomeMsg("%s", _stats.toJson());
+    }
+
+    /**
+     * Record STATS as the statistics of the last search by an AI.
+     */
+    void setStats(SearchStats stats) {
+        _stats = stats;
+    }
+
+    /**
+     * Return the statistics of the last search by an AI, or null if
+     * none.
+     */
+    SearchStats stats() {
+        return _stats;
+    }
+
+    /**
+     * Have AIs search with THREADS threads.
+     */
+    void setThreads(int threads) {
+        _threads = threads;
+    }
+
+    /**
+     * Return the number of threads with which AIs search.
+     */
+    int threads() {
+        return _threads;
+    }
+
+    /**
+     * Allow AIs MSEC milliseconds per move, where MSEC > 0.
+     */
+    void setTimeLimit(long msec) {
+        _timeLimit = msec;
+    }
+
+    /**
+     * Return the time allowed to AIs per move (msec).
+     */
+    long timeLimit() {
+        return _timeLimit;
+    }
+
     /**
      * Return board private field.
      *
@@ -1,9 +1,11 @@
 package qirkat;
 
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PipedReader;
 import java.io.PipedWriter;
+import java.nio.file.Paths;
 
 /**
  * The main program for Qirkat.
@@ -41,10 +43,30 @@ public class Main {
 
     /**
      * Run Qirkat game.  Use display if ARGS[k] is '--display', timing
-     * if ARGS[k] is "--timing".
+     * if ARGS[k] is "--timing".  "--tt=N" sets the size of each AI's
+     * transposition table to N megabytes, and "--tt-replace=P" its
+     * replacement policy P (always, depth, or aged).  "--time=N" allows
+     * AIs N > 0 milliseconds per move, and "--threads=N" has them search
+     * with N threads.  "--weights=FILE" reads the weights of the AIs'
+     * evaluation terms from FILE (see WeightedEvaluator.read), and
+     * "--book=FILE" has them play from the opening book in FILE (see
+     * OpeningBook), and "--tablebase=FILE" has them use the endgame
+     * tablebase in FILE (see Tablebase).  "--ponder" has AIs go on
+     * searching during their opponents' turns.  When timing, each AI
+     * move is followed by the statistics of its search (see
+     * SearchStats), the last as a line of JSON.
      */
     public static void main(String[] args) {
         boolean useGUI;
+        int tableMegabytes = TranspositionTable.DEFAULT_MEGABYTES;
+        TranspositionTable.Replacement tablePolicy =
+            TranspositionTable.Replacement.AGED;
+        long timeLimit = Game.DEFAULT_TIME_LIMIT;
+        int threads = 1;
+        Evaluator evaluator = new WeightedEvaluator();
+        OpeningBook book = null;
+        Tablebase tablebase = null;
+        boolean ponder = false;
         System.out.println("CS61B Qirkat! Version 2.0");
         useGUI = false;
         _timing = false;
@@ -56,8 +78,37 @@ public class Main {
             case "--timing":
                 _timing = true;
                 break;
+            case "--ponder":
+                ponder = true;
+                break;
             default:
-                usage();
+                try {
+                    if (args[i].startsWith("--tt=")) {
+                        tableMegabytes =
+                            Integer.parseInt(args[i].substring(5));
+                    } else if (args[i].startsWith("--tt-replace=")) {
+                        tablePolicy = TranspositionTable.Replacement.valueOf(
+                            args[i].substring(13).toUpperCase());
+                    } else if (args[i].startsWith("--time=")) {
+                        timeLimit = Long.parseLong(args[i].substring(7));
+                    } else if (args[i].startsWith("--threads=")) {
+                        threads = Integer.parseInt(args[i].substring(10));
+                    } else if (args[i].startsWith("--weights=")) {
+                        evaluator = readWeights(args[i].substring(10));
+                    } else if (args[i].startsWith("--book=")) {
+                        book = openBook(args[i].substring(7));
+                    } else if (args[i].startsWith("--tablebase=")) {
+                        tablebase = openTablebase(args[i].substring(12));
+                    } else {
+                        usage();
+                    }
+                } catch (IllegalArgumentException excp) {
+                    usage();
+                }
+                if (tableMegabytes < 0 || timeLimit < 1 || threads < 1
+                    || threads > Game.MAX_THREADS) {
+                    usage();
+                }
                 break;
             }
         }
@@ -89,15 +140,68 @@ public class Main {
                             true),
                     new TextReporter());
         }
+        game.setTable(tableMegabytes, tablePolicy);
+        game.setTimeLimit(timeLimit);
+        game.setThreads(threads);
+        game.setEvaluator(evaluator);
+        game.setBook(book);
+        game.setTablebase(tablebase);
+        game.setPonder(ponder);
         game.process();
     }
 
+    /**
+     * Return an evaluator whose weights are read from the file named
+     * FILENAME, exiting if it cannot be read.
+     */
+    private static Evaluator readWeights(String fileName) {
+        try (FileReader input = new FileReader(fileName)) {
+            return WeightedEvaluator.read(input);
+        } catch (IOException excp) {
+            System.err.printf("Could not read weights from %s.%n", fileName);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Return the opening book in the file named FILENAME, exiting if it
+     * cannot be read.
+     */
+    private static OpeningBook openBook(String fileName) {
+        try {
+            return new OpeningBook(Paths.get(fileName));
+        } catch (IOException excp) {
+            System.err.printf("Could not read opening book %s.%n",
+                              fileName);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Return the endgame tablebase in the file named FILENAME, exiting if
+     * it cannot be read.
+     */
+    private static Tablebase openTablebase(String fileName) {
+        try {
+            return new Tablebase(Paths.get(fileName));
+        } catch (IOException excp) {
+            System.err.printf("Could not read tablebase %s.%n", fileName);
+            System.exit(1);
+            return null;
+        }
+    }
+
     /**
      * Give usage message and exit.
      */
     static void usage() {
         System.err.println("Usage: java qirkat.Main [--display] [--timing]"
-                + " [--strict]");
+                + " [--strict] [--tt=MEGABYTES]"
+                + " [--tt-replace=always|depth|aged] [--time=MSEC]"
+                + " [--threads=N] [--weights=FILE] [--book=FILE]"
+                + " [--tablebase=FILE] [--ponder]");
         System.exit(1);
     }
 
@@ -124,6 +228,25 @@ public class Main {
         }
     }
 
+    /**
+     * Report STATS, a line of search statistics, if timing.
+     */
+    static void reportStats(String stats) {
+        if (_timing) {
+            System.err.printf("[%s]%n", stats);
+        }
+    }
+
+    /**
+     * Print DATA, a line meant to be read by programs (such as a JSON
+     * object), if we are timing.
+     */
+    static void reportData(String data) {
+        if (_timing) {
+            System.err.println(data);
+        }
+    }
+
     /**
      * Report total time statistics, if timing.
      */
@@ -21,9 +21,15 @@ class Manual extends Player {
         _prompt = myColor + ": ";
     }
 
+    /** Return the next move command's move, or null if the game stops
+     *  before one (as after "clear"). */
     @Override
     Move myMove() {
-        return Move.parseMove(game().getMoveCmnd(_prompt).operands()[0]);
+        Command cmnd = game().getMoveCmnd(_prompt);
+        if (cmnd == null) {
+            return null;
+        }
+        return Move.parseMove(cmnd.operands()[0]);
     }
 }
 
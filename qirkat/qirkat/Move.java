@@ -2,8 +2,7 @@ package qirkat;
 
 import java.util.ArrayList;
 import java.util.Formatter;
-import java.util.HashMap;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,10 +28,6 @@ class Move {
      * Maximum linearized index.
      */
     static final int MAX_INDEX = SIDE * SIDE - 1;
-    /**
-     * The identity function on Moves.
-     */
-    static final Function<Move, Move> IDENTITY = k -> k;
     /**
      * Constants used to compute linearized indices.
      */
@@ -49,22 +44,19 @@ class Move {
      * one. Moves themselves are immutable, and for any possible move,
      * there is exactly one object of type Move. */
 
-    /* To avoid creating Move objects that are not needed, we maintain a
-     * a static variable, _staged containing a Move object.  The move
-     * factory methods then sets the fields of this object before looking to
-     * to see if there is already a Move object with the same parameters.
-     * If there is, the move methods will simply return it, thus allowing
-     * _staged to be reused on the next call without having to create a
-     * new Move object.  Otherwise, we use the _staged object itself as the
-     * new Move, and set the variable to null so that we create a new
-     * Move on the next call to move. There is a drawback: since there
-     * is at most one _staged object at any time, at most one call to move
-     * may execute simultaneously.  Otherwise, two the methods may attempt
-     * to use the same Move object for two different Moves, which clearly
-     * will not work.  Therefore, we indicate in the comments that a number
-     * of the operations are not "thread safe". Fortunately, you'll not run
-     * into this problem as long as you don't do anything fancy (such as
-     * trying to make your AI a parallel program).
+    /* Since there are only 25 squares, there are only 625 single moves
+     * and jumps (counting vestigial ones), and we create them all in
+     * advance in SINGLES.  A multi-jump is a single jump followed by
+     * another (possibly multiple) jump, which starts where the first
+     * ends.  Therefore, the multi-jumps that begin with a jump followed
+     * by a given Move are distinguished by the square from which they
+     * start, and each jump keeps the multi-jumps that end with it in
+     * its array _prefixes, indexed by that square, creating each on
+     * first use.  Because the arrays are atomic, several threads of a
+     * parallel AI may generate moves at once without locking: a thread
+     * that loses a race to create a multi-jump simply uses the winner's
+     * Move.  Once all the Moves a program uses exist, the move factory
+     * allocates nothing.
      */
     /**
      * Pattern for valid move input.
@@ -72,72 +64,105 @@ class Move {
     private static final Pattern MOVE_PATTERN =
             Pattern.compile("(?:.*-)?([a-e])([1-5])-([a-e])([1-5])$");
     /**
-     * Holds the next Move object to be added to _internedMoves.
-     * The factory method move tentatively fills it in, and then returns
-     * it if it is unique (resetting _staged to null).
-     */
-    private static Move _staged;
-    /**
-     * The set of all distinct moves generated so far.
+     * All single moves and jumps: SINGLES[k0][k1] is the Move from
+     * linearized index k0 to k1.
      */
-    private static HashMap<Move, Move> _internedMoves = new HashMap<>();
+    private static final Move[][] SINGLES =
+        new Move[MAX_INDEX + 1][MAX_INDEX + 1];
+
+    static {
+        for (int k0 = 0; k0 <= MAX_INDEX; k0 += 1) {
+            for (int k1 = 0; k1 <= MAX_INDEX; k1 += 1) {
+                SINGLES[k0][k1] =
+                    new Move(col(k0), row(k0), col(k1), row(k1), null);
+            }
+        }
+    }
+
     /**
      * Linearized indices.
      */
-    private byte _fromIndex, _toIndex;
+    private final byte _fromIndex, _toIndex;
     /**
      * True iff move is a jump.
      */
-    private boolean _isJump;
+    private final boolean _isJump;
     /**
      * From and to squares, or 0s if a pass.
      */
-    private char _col0, _row0, _col1, _row1;
+    private final char _col0, _row0, _col1, _row1;
     /**
      * For a jump, the Move representing the jumps following the
      * initial jump.
      */
-    private Move _nextJump;
+    private final Move _nextJump;
+    /**
+     * For a jump, the jumps that end with this one: _prefixes[k] is the
+     * jump from linearized index k followed by me, or null if it has not
+     * been created yet.  Null for a non-capturing move.
+     */
+    private final AtomicReferenceArray<Move> _prefixes;
 
     /**
-     * The move constructor, made private to prevent its use except in
-     * this class.
+     * The move COL0 ROW0 - COL1 ROW1 - NEXTJUMP, made private to prevent
+     * its use except in this class.
      */
-    private Move() {
+    private Move(char col0, char row0, char col1, char row1,
+                 Move nextJump) {
+        assert col0 >= 'a' && row0 >= '1' && col1 >= 'a' && row1 >= '1'
+                && col0 <= 'e' && row0 <= '5' && col1 <= 'e' && row1 <= '5';
+        _col0 = col0;
+        _row0 = row0;
+        _col1 = col1;
+        _row1 = row1;
+        _fromIndex = (byte) index(col0, row0);
+        _toIndex = (byte) index(col1, row1);
+        _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
+        _nextJump = nextJump;
+        _prefixes =
+            _isJump ? new AtomicReferenceArray<>(MAX_INDEX + 1) : null;
     }
 
     /**
      * A factory method that returns a Move from COL0 ROW0 to COL1 ROW1,
      * followed by NEXTJUMP, if this move is a jump. Assumes the column
      * and row designations are valid and that NEXTJUMP is null for a
-     * non-capturing move.  Not thread-safe.
+     * non-capturing move.
      */
     static Move move(char col0, char row0, char col1, char row1,
                      Move nextJump) {
-        if (_staged == null) {
-            _staged = new Move();
-        }
-        _staged.set(col0, row0, col1, row1, nextJump);
-        if (_staged.isJump() && nextJump != null && !nextJump.isJump()) {
-            throw new IllegalArgumentException("bad jump");
-        } else if (!_staged.isJump() && nextJump != null) {
+        int from = index(col0, row0), to = index(col1, row1);
+        Move single = SINGLES[from][to];
+        if (nextJump == null) {
+            return single;
+        } else if (!single.isJump() || !nextJump.isJump()
+                   || nextJump.fromIndex() != to) {
             throw new IllegalArgumentException("bad jump");
         }
-        Move result = _internedMoves.computeIfAbsent(_staged, IDENTITY);
-        if (result == _staged) {
-            _staged = null;
+        Move result = nextJump._prefixes.get(from);
+        if (result == null) {
+            result = new Move(col0, row0, col1, row1, nextJump);
+            if (!nextJump._prefixes.compareAndSet(from, null, result)) {
+                result = nextJump._prefixes.get(from);
+            }
         }
         return result;
     }
 
     /**
      * Return a single move or jump from (COL0, ROW0) to (COL1, ROW1).
-     * Not thread-safe.
      */
     static Move move(char col0, char row0, char col1, char row1) {
         return move(col0, row0, col1, row1, null);
     }
 
+    /**
+     * Return the single move or jump from linearized index K0 to K1.
+     */
+    static Move move(int k0, int k1) {
+        return SINGLES[k0][k1];
+    }
+
     /**
      * Return a vestigial Move consisting only of starting square
      * COL0 ROW0.
@@ -196,6 +221,134 @@ class Move {
         }
     }
 
+    /* A move may also be packed into a long, for compact storage and for
+     * searching without Move objects.  Bits 0-4 of a packed move hold the
+     * linearized index of its starting square, bits 5-8 its number of
+     * legs, and bit 9 is set iff it is a jump.  Then come the directions
+     * of its legs (Board.NORTH, etc.), three bits each, the first leg
+     * in bits 10-12. */
+
+    /**
+     * Maximum number of legs in a packed move.
+     */
+    static final int MAX_PACKED_LEGS = 15;
+    /**
+     * Layout of a packed move.
+     */
+    private static final int
+            LEGS_SHIFT = 5,
+            LEGS_MASK = 0xf,
+            JUMP_BIT = 9,
+            DIRECTIONS_SHIFT = 10,
+            DIRECTION_BITS = 3,
+            SQUARE_MASK = 0x1f;
+
+    /**
+     * Return a packed move of no legs from linearized index FROM, which
+     * is a jump iff JUMP.  Add legs with packLeg.
+     */
+    static long packStart(int from, boolean jump) {
+        return from | (jump ? 1L << JUMP_BIT : 0);
+    }
+
+    /**
+     * Return PACKED followed by a further leg in DIRECTION.
+     */
+    static long packLeg(long packed, int direction) {
+        int legs = packedLegs(packed);
+        assert legs < MAX_PACKED_LEGS;
+        return packed + (1L << LEGS_SHIFT)
+            | (long) direction << (DIRECTIONS_SHIFT + legs * DIRECTION_BITS);
+    }
+
+    /**
+     * Return the linearized index of the starting square of PACKED.
+     */
+    static int packedFrom(long packed) {
+        return (int) packed & SQUARE_MASK;
+    }
+
+    /**
+     * Return the number of legs of PACKED.
+     */
+    static int packedLegs(long packed) {
+        return (int) (packed >>> LEGS_SHIFT) & LEGS_MASK;
+    }
+
+    /**
+     * Return true iff PACKED is a jump.
+     */
+    static boolean packedIsJump(long packed) {
+        return (packed & (1L << JUMP_BIT)) != 0;
+    }
+
+    /**
+     * Return the direction of leg number LEG (from 0) of PACKED.
+     */
+    static int packedDirection(long packed, int leg) {
+        return (int) (packed >>> (DIRECTIONS_SHIFT + leg * DIRECTION_BITS))
+            & ((1 << DIRECTION_BITS) - 1);
+    }
+
+    /**
+     * Return the linearized index of the square at which PACKED ends.
+     */
+    static int packedTo(long packed) {
+        int k = packedFrom(packed);
+        int step = packedIsJump(packed) ? 2 : 1;
+        for (int i = packedLegs(packed) - 1; i >= 0; i -= 1) {
+            k += step * Board.OFFSET[packedDirection(packed, i)];
+        }
+        return k;
+    }
+
+    /**
+     * Return the Move packed in PACKED.
+     */
+    static Move unpack(long packed) {
+        int step = packedIsJump(packed) ? 2 : 1;
+        int from = packedFrom(packed);
+        int[] squares = new int[packedLegs(packed) + 1];
+        squares[0] = from;
+        for (int i = 1; i < squares.length; i += 1) {
+            squares[i] = squares[i - 1]
+                + step * Board.OFFSET[packedDirection(packed, i - 1)];
+        }
+        if (squares.length == 1) {
+            return move(col(from), row(from));
+        }
+        Move result = null;
+        for (int i = squares.length - 1; i > 0; i -= 1) {
+            int k0 = squares[i - 1], k1 = squares[i];
+            result = move(col(k0), row(k0), col(k1), row(k1), result);
+        }
+        return result;
+    }
+
+    /**
+     * Return my packed form.  Throws IllegalArgumentException if I
+     * have too many legs, or a leg that is not a single step or a jump
+     * along a line of the board.
+     */
+    long packed() {
+        long result = packStart(_fromIndex, _isJump);
+        if (isVestigial()) {
+            return result;
+        }
+        int step = _isJump ? 2 : 1;
+        for (Move leg = this; leg != null; leg = leg._nextJump) {
+            int dcol = leg._col1 - leg._col0, drow = leg._row1 - leg._row0;
+            int direction =
+                dcol % step != 0 || drow % step != 0 ? -1
+                : Board.direction(dcol / step, drow / step);
+            if (direction < 0 || packedLegs(result) == MAX_PACKED_LEGS) {
+                throw new IllegalArgumentException("move cannot be packed");
+            }
+            result = packLeg(result, direction);
+        }
+        return result;
+    }
+
     /**
      * Return true iff (C, R) is a valid square designation.
      */
@@ -414,27 +567,4 @@ class Move {
         }
     }
 
-    /**
-     * Set me to COL0 ROW0 - COL1 ROW1 - NEXTJUMP.
-     */
-    private void set(char col0, char row0, char col1, char row1,
-                     Move nextJump) {
-        assert col0 >= 'a' && row0 >= '1' && col1 >= 'a' && row1 >= '1'
-                && col0 <= 'e' && row0 <= '5' && col1 <= 'e' && row1 <= '5';
-        _col0 = col0;
-        _row0 = row0;
-        _col1 = col1;
-        _row1 = row1;
-        _fromIndex = (byte) index(col0, row0);
-        _toIndex = (byte) index(col1, row1);
-        _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
-        _nextJump = nextJump;
-        assert (_isJump
-                && (nextJump == null
-                || (nextJump.isJump()
-                && col1 == nextJump.col0()
-                && row1 == nextJump.row0())))
-                || (!_isJump && nextJump == null);
-    }
-
 }
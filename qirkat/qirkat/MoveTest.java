@@ -44,4 +44,71 @@ public class MoveTest {
         assertEquals("a3-a5-c3", parseMove("a3-a5-c3").toString());
         assertEquals("a3-a5-c3-e1", parseMove("a3-a5-c3-e1").toString());
     }
+
+    @Test
+    public void testPacking() {
+        for (String str : new String[] { "a3-b2", "b2-b1", "c3-d4", "a1-c1",
+                                         "a3-a5-c3-e1", "e5-c3-c5-e5" }) {
+            Move m = parseMove(str);
+            long packed = m.packed();
+            assertSame(m, Move.unpack(packed));
+            assertEquals(m.fromIndex(), Move.packedFrom(packed));
+            assertEquals(m.isJump(), Move.packedIsJump(packed));
+            Move last = m;
+            while (last.jumpTail() != null) {
+                last = last.jumpTail();
+            }
+            assertEquals(last.toIndex(), Move.packedTo(packed));
+        }
+        assertEquals(3, Move.packedLegs(parseMove("a3-a5-c3-e1").packed()));
+        Move vestigial = move('c', '3');
+        assertSame(vestigial, Move.unpack(vestigial.packed()));
+    }
+
+    @Test
+    public void testUnpackable() {
+        try {
+            parseMove("a1-c2").packed();
+            fail("a1-c2 should not be packable");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testInterning() {
+        assertSame(move('a', '3', 'b', '2'), parseMove("a3-b2"));
+        assertSame(move('c', '3', 'c', '3'), move('c', '3'));
+        assertSame(parseMove("a1-c1-c3-a3"),
+                   move(parseMove("a1-c1"), parseMove("c1-c3-a3")));
+        assertNotSame(parseMove("a1-c1-c3-a3"), parseMove("e1-c1-c3-a3"));
+    }
+
+    @Test
+    public void testConcurrentInterning() throws InterruptedException {
+        final String[] chains = {
+            "a1-c1-e1-e3-c3-a3-a5", "e5-c5-a5-a3-c3-e3-e1",
+            "a1-c1-e1-e3-c3-a3-a5-c5", "c3-a1-c1-e1-e3-e5-c5",
+        };
+        final Move[][] results = new Move[8][chains.length];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            final Move[] mine = results[t];
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < chains.length; i += 1) {
+                    mine[i] = parseMove(chains[i]);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < chains.length; i += 1) {
+            assertEquals(chains[i], results[0][i].toString());
+            for (Move[] result : results) {
+                assertSame(results[0][i], result[i]);
+            }
+        }
+    }
 }
@@ -0,0 +1,205 @@
+package qirkat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/** A read-only table of moves for positions near the start of the game,
+ *  found by deep searches done in advance (see build), and kept in a
+ *  file that is memory-mapped when it is opened, so that looking up a
+ *  position costs a binary search and no reading.
+ *
+ *  The file holds MAGIC, the number of entries, and then the entries,
+ *  sorted by the unsigned value of their keys, each consisting of the
+ *  Zobrist key of a position (see Board.key), the packed best move from
+ *  that position (see Move.packed), and its value to the side to move,
+ *  all big-endian.
+ *
+ *  To build a book, use
+ *  <pre>
+ *      java qirkat.OpeningBook FILE [--plies=N] [--depth=D]
+ *  </pre>
+ *  which searches each position reachable in fewer than N moves
+ *  (default DEFAULT_PLIES) from the initial position D levels deep
+ *  (default DEFAULT_DEPTH).
+ *  @author Santhosh Subramanian
+ */
+public class OpeningBook {
+
+    /** Identifies a book file. */
+    static final int MAGIC = 0x51424b31;
+    /** Default number of moves from the initial position covered by a
+     *  book. */
+    static final int DEFAULT_PLIES = 8;
+    /** Default depth of the searches that build a book. */
+    static final int DEFAULT_DEPTH = 12;
+    /** Sizes in bytes of the header and of each entry. */
+    private static final int HEADER_BYTES = 8, ENTRY_BYTES = 20;
+    /** Offsets within an entry of the move and the score. */
+    private static final int MOVE_OFFSET = 8, SCORE_OFFSET = 16;
+
+    /** The mapped file. */
+    private final ByteBuffer _entries;
+    /** Number of entries. */
+    private final int _size;
+
+    /** The book in the file FILE, which is mapped into memory.  Throws
+     *  IOException if FILE cannot be read or is not a book. */
+    OpeningBook(Path file) throws IOException {
+        try (FileChannel channel =
+                 FileChannel.open(file, StandardOpenOption.READ)) {
+            _entries = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                   channel.size());
+        }
+        if (_entries.limit() < HEADER_BYTES
+            || _entries.getInt(0) != MAGIC) {
+            throw new IOException("not an opening book: " + file);
+        }
+        _size = _entries.getInt(4);
+        if ((long) _size * ENTRY_BYTES + HEADER_BYTES != _entries.limit()) {
+            throw new IOException("truncated opening book: " + file);
+        }
+    }
+
+    /** Return the number of positions in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the packed move recorded for the position with Zobrist key
+     *  KEY, or 0 if there is none. */
+    long move(long key) {
+        int k = find(key);
+        return k < 0 ? 0 : _entries.getLong(offset(k) + MOVE_OFFSET);
+    }
+
+    /** Return the value to the side to move of the position with Zobrist
+     *  key KEY, which must be in me. */
+    int score(long key) {
+        int k = find(key);
+        assert k >= 0;
+        return _entries.getInt(offset(k) + SCORE_OFFSET);
+    }
+
+    /** Return the index of the entry for KEY, or -1 if there is none. */
+    private int find(long key) {
+        int lo = 0, hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Long.compareUnsigned(_entries.getLong(offset(mid)),
+                                           key);
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the position in the file of entry #K. */
+    private static int offset(int k) {
+        return HEADER_BYTES + k * ENTRY_BYTES;
+    }
+
+    /** Write to FILE a book of the positions reachable in fewer than
+     *  PLIES moves from the initial position, searching each DEPTH
+     *  levels, and return the number of positions in it. */
+    static int build(Path file, int plies, int depth) throws IOException {
+        Game game = new Game(new Board(),
+                             new ReaderSource(new StringReader(""), false),
+                             new TextReporter());
+        AI ai = new AI(game, PieceColor.WHITE);
+        ArrayList<long[]> entries = new ArrayList<>();
+        HashSet<Long> seen = new HashSet<>();
+        ArrayList<Board> level = new ArrayList<>();
+        level.add(new Board());
+        seen.add(level.get(0).key());
+        for (int ply = 0; ply < plies && !level.isEmpty(); ply += 1) {
+            ArrayList<Board> next = new ArrayList<>();
+            for (Board position : level) {
+                ArrayList<Move> moves = position.getMoves();
+                if (moves.isEmpty()) {
+                    continue;
+                }
+                game.getBoard().copy(position);
+                Move best = ai.findMove(depth, 0);
+                entries.add(new long[] {
+                    position.key(), best.packed(), ai.score()
+                });
+                for (Move mov : moves) {
+                    Board child = new Board(position);
+                    child.makeMove(mov);
+                    if (seen.add(child.key())) {
+                        next.add(child);
+                    }
+                }
+            }
+            level = next;
+        }
+        entries.sort((e0, e1) -> Long.compareUnsigned(e0[0], e1[0]));
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                     new FileOutputStream(file.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+                out.writeInt((int) entry[2]);
+            }
+        }
+        return entries.size();
+    }
+
+    /** Build a book as described by ARGS (see OpeningBook). */
+    public static void main(String[] args) {
+        int plies = DEFAULT_PLIES, depth = DEFAULT_DEPTH;
+        Path file = null;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--plies=")) {
+                    plies = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--depth=")) {
+                    depth = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--") || file != null) {
+                    usage();
+                } else {
+                    file = Paths.get(arg);
+                }
+            }
+        } catch (IllegalArgumentException excp) {
+            usage();
+        }
+        if (file == null || plies < 1 || depth < 1) {
+            usage();
+        }
+        try {
+            System.out.printf("%d positions%n", build(file, plies, depth));
+        } catch (IOException excp) {
+            System.err.printf("Could not write %s: %s%n", file,
+                              excp.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /** Give usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java qirkat.OpeningBook FILE"
+                           + " [--plies=N] [--depth=D]");
+        System.exit(1);
+    }
+
+}
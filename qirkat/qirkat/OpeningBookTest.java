@@ -0,0 +1,61 @@
+package qirkat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the OpeningBook class.
+ *  @author Santhosh Subramanian
+ */
+public class OpeningBookTest {
+
+    @Test
+    public void testBuildAndProbe() throws IOException {
+        File file = File.createTempFile("book", ".bin");
+        file.deleteOnExit();
+        Path path = file.toPath();
+        int size = OpeningBook.build(path, 3, 3);
+        OpeningBook book = new OpeningBook(path);
+        assertEquals(size, book.size());
+        assertEquals(1 + 4 + 5, size);
+
+        Board b = new Board();
+        long mov = book.move(b.key());
+        assertTrue(b.legalMove(mov));
+        b.makeMove(mov);
+        assertTrue(b.legalMove(book.move(b.key())));
+        assertEquals(0, book.move(b.key() ^ 1));
+
+        Game game = new Game(new Board(),
+                             new ReaderSource(new StringReader(""), false),
+                             new TextReporter());
+        game.setBook(book);
+        AI ai = new AI(game, PieceColor.WHITE);
+        assertEquals(Move.unpack(book.move(new Board().key())),
+                     ai.findMove(10, 0));
+        assertEquals(0, ai.nodes());
+        assertEquals(book.score(new Board().key()), ai.score());
+    }
+
+    @Test
+    public void testNotABook() throws IOException {
+        File file = File.createTempFile("book", ".bin");
+        file.deleteOnExit();
+        try (FileWriter out = new FileWriter(file)) {
+            out.write("not a book");
+        }
+        try {
+            new OpeningBook(file.toPath());
+            fail("opened a file that is not a book");
+        } catch (IOException excp) {
+            /* Expected. */
+        }
+    }
+
+}
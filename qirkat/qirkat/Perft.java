@@ -0,0 +1,114 @@
+package qirkat;
+
+import java.util.ArrayList;
+
+import static qirkat.PieceColor.*;
+
+/**
+ * Move-generation counts ("perft") for a Board: the number of positions
+ * reached by every sequence of a given number of legal moves.  Comparing
+ * these counts against known totals validates Board.getMoves, makeMove,
+ * and undo, and timing them measures the speed of move generation.
+ *
+ * @author Santhosh Subramanian
+ */
+class Perft {
+
+    /**
+     * Return the number of positions reached by all sequences of DEPTH
+     * legal moves from BOARD.  BOARD is unchanged on return.
+     */
+    static long perft(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        ArrayList<Move> moves = board.getMoves();
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (Move mov : moves) {
+            board.makeMove(mov);
+            nodes += perft(board, depth - 1);
+            board.undo();
+        }
+        return nodes;
+    }
+
+    /**
+     * Count the positions DEPTH moves from a copy of BOARD, reporting the
+     * total and the rate of generation to REPORTER, preceded by the count
+     * below each first move if DIVIDE.  Return the total.
+     */
+    static long run(Board board, int depth, boolean divide,
+                    Reporter reporter) {
+        Board b = new Board(board);
+        b.setSilent(true);
+        long start = System.nanoTime();
+        long nodes;
+        if (divide && depth > 0) {
+            nodes = 0;
+            for (Move mov : b.getMoves()) {
+                b.makeMove(mov);
+                long count = perft(b, depth - 1);
+                b.undo();
+                reporter.outcomeMsg("%s: %d", mov, count);
+                nodes += count;
+            }
+        } else {
+            nodes = perft(b, depth);
+        }
+        long nanos = Math.max(1, System.nanoTime() - start);
+        reporter.outcomeMsg("perft %d: %d nodes in %d msec (%d nodes/sec)",
+                            depth, nodes, nanos / 1000000,
+                            nodes * 1000000000L / nanos);
+        return nodes;
+    }
+
+    /**
+     * Run perft without the game driver.  ARGS are DEPTH, optionally
+     * followed by "divide", optionally followed by the side to move
+     * (white or black) and a board description as for the 'set' command.
+     * The default position is the initial one.
+     */
+    public static void main(String[] args) {
+        Board board = new Board();
+        boolean divide = false;
+        int depth = 0;
+        int k;
+        try {
+            depth = Integer.parseInt(args[0]);
+            if (depth < 0) {
+                usage();
+            }
+            k = 1;
+            if (k < args.length && args[k].equals("divide")) {
+                divide = true;
+                k += 1;
+            }
+            if (k < args.length) {
+                PieceColor next = args[k].equalsIgnoreCase("white") ? WHITE
+                    : args[k].equalsIgnoreCase("black") ? BLACK : EMPTY;
+                String str = "";
+                for (int i = k + 1; i < args.length; i += 1) {
+                    str += args[i];
+                }
+                board.setPieces(str, next);
+            }
+        } catch (ArrayIndexOutOfBoundsException
+                 | IllegalArgumentException excp) {
+            usage();
+        }
+        run(board, depth, divide, new TextReporter());
+    }
+
+    /**
+     * Give usage message and exit.
+     */
+    static void usage() {
+        System.err.println("Usage: java qirkat.Perft DEPTH [divide]"
+                           + " [white|black BOARD]");
+        System.exit(1);
+    }
+
+}
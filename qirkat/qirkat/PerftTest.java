@@ -0,0 +1,63 @@
+package qirkat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Perft regression tests: counts of positions reachable in a given
+ * number of moves, cross-checked against an independent generator.
+ *
+ * @author Santhosh Subramanian
+ */
+public class PerftTest {
+
+    /** Perft totals for depths 1, 2, ... from the initial position. */
+    private static final long[] INIT_COUNTS =
+    { 4, 5, 6, 12, 26, 96, 415, 1823 };
+
+    /** An open middle-game position, white to move. */
+    private static final String OPEN_BOARD = "w-w-w-w-w-----b-b-b-bb-bb";
+
+    /** Perft totals for depths 1, 2, ... from OPEN_BOARD. */
+    private static final long[] OPEN_COUNTS = { 16, 130, 1037, 7427 };
+
+    /** A middle-game position with black to move. */
+    private static final String MIDDLE_BOARD = "wwwww-ww-w--w-b--bbbbbbbb";
+
+    /** Perft totals for depths 1, 2, ... from MIDDLE_BOARD. */
+    private static final long[] MIDDLE_COUNTS = { 8, 52, 214, 1147, 5595 };
+
+    private static void checkCounts(Board b, long[] counts) {
+        String before = b.toString();
+        for (int depth = 1; depth <= counts.length; depth += 1) {
+            assertEquals("perft " + depth, counts[depth - 1],
+                         Perft.perft(b, depth));
+            assertEquals("board changed by perft", before, b.toString());
+        }
+    }
+
+    @Test
+    public void testInitial() {
+        checkCounts(new Board(), INIT_COUNTS);
+    }
+
+    @Test
+    public void testOpen() {
+        Board b = new Board();
+        b.setPieces(OPEN_BOARD, PieceColor.WHITE);
+        checkCounts(b, OPEN_COUNTS);
+    }
+
+    @Test
+    public void testMiddleGame() {
+        Board b = new Board();
+        b.setPieces(MIDDLE_BOARD, PieceColor.BLACK);
+        checkCounts(b, MIDDLE_COUNTS);
+    }
+
+    @Test
+    public void testDepthZero() {
+        assertEquals(1, Perft.perft(new Board(), 0));
+    }
+}
@@ -51,4 +51,11 @@ abstract class Player {
      * board.whoseMove() == myColor and that !board.gameOver().
      */
     abstract Move myMove();
+
+    /**
+     * Stop anything I am doing while it is not my move, since the game
+     * is over.
+     */
+    void stop() {
+    }
 }
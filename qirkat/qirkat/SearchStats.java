@@ -0,0 +1,132 @@
+package qirkat;
+
+import java.util.Locale;
+
+/** Counts describing one search by an AI (see AI.stats), for finding
+ *  out where its time went.
+ *  @author Santhosh Subramanian
+ */
+class SearchStats {
+
+    /** See the constructor. */
+    private final int _depth, _selectiveDepth;
+    /** See the constructor. */
+    private final long _nodes, _quiescenceNodes, _cutoffs,
+        _firstMoveCutoffs, _tableProbes, _tableHits, _nanos;
+    /** Effective branching factor. */
+    private final double _branching;
+
+    /** Statistics for a search that completed DEPTH levels and reached
+     *  SELECTIVEDEPTH plies below the root, searching NODES positions,
+     *  QUIESCENCENODES of them in quiescence searches, in which CUTOFFS
+     *  positions were cut off, FIRSTMOVECUTOFFS of them by their first
+     *  move, whose last two iterations searched LASTITERATION and
+     *  PRIORITERATION positions, which probed the transposition table
+     *  TABLEPROBES times and found TABLEHITS positions, and which took
+     *  NANOS nanoseconds. */
+    SearchStats(int depth, int selectiveDepth, long nodes,
+                long quiescenceNodes, long cutoffs, long firstMoveCutoffs,
+                long lastIteration, long priorIteration, long tableProbes,
+                long tableHits, long nanos) {
+        _depth = depth;
+        _selectiveDepth = selectiveDepth;
+        _nodes = nodes;
+        _quiescenceNodes = quiescenceNodes;
+        _cutoffs = cutoffs;
+        _firstMoveCutoffs = firstMoveCutoffs;
+        _branching = priorIteration == 0 ? 0.0
+            : (double) lastIteration / priorIteration;
+        _tableProbes = tableProbes;
+        _tableHits = tableHits;
+        _nanos = nanos;
+    }
+
+    /** Return the number of levels searched by the last completed
+     *  iteration. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the greatest number of plies below the root reached,
+     *  including quiescence searches. */
+    int selectiveDepth() {
+        return _selectiveDepth;
+    }
+
+    /** Return the number of positions searched. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of positions searched by quiescence searches. */
+    long quiescenceNodes() {
+        return _quiescenceNodes;
+    }
+
+    /** Return the number of positions at which a move caused a beta
+     *  cutoff. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the fraction of cutoffs that were caused by the first move
+     *  searched, which measures the quality of move ordering. */
+    double firstMoveCutoffRate() {
+        return _cutoffs == 0 ? 0.0 : (double) _firstMoveCutoffs / _cutoffs;
+    }
+
+    /** Return the effective branching factor: the ratio of the numbers
+     *  of positions searched by the last two completed iterations, or 0
+     *  if there were fewer than two. */
+    double branchingFactor() {
+        return _branching;
+    }
+
+    /** Return the number of probes of the transposition table. */
+    long tableProbes() {
+        return _tableProbes;
+    }
+
+    /** Return the number of probes that found their position. */
+    long tableHits() {
+        return _tableHits;
+    }
+
+    /** Return the duration of the search in milliseconds. */
+    long millis() {
+        return _nanos / 1_000_000;
+    }
+
+    /** Return the number of positions searched per second. */
+    long nodesPerSecond() {
+        return _nanos == 0 ? 0 : _nodes * 1_000_000_000 / _nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "depth %d/%d, %d positions "
+                             + "(%d quiescence), %d cutoffs (%.1f%% first "
+                             + "move), branching %.2f, TT %d probes "
+                             + "(%d hits), %d msec, %d positions/sec",
+                             _depth, _selectiveDepth, _nodes,
+                             _quiescenceNodes, _cutoffs,
+                             100.0 * firstMoveCutoffRate(), _branching,
+                             _tableProbes, _tableHits, millis(),
+                             nodesPerSecond());
+    }
+
+    /** Return my statistics as a JSON object on one line. */
+    String toJson() {
+        return String.format(Locale.ROOT, "{\"depth\":%d,\"seldepth\":%d,"
+                             + "\"nodes\":%d,\"qnodes\":%d,\"cutoffs\":%d,"
+                             + "\"first_move_cutoff_rate\":%.4f,"
+                             + "\"branching\":%.4f,\"tt_probes\":%d,"
+                             + "\"tt_hits\":%d,\"msec\":%d,\"nps\":%d}",
+                             _depth, _selectiveDepth, _nodes,
+                             _quiescenceNodes, _cutoffs,
+                             firstMoveCutoffRate(), _branching,
+                             _tableProbes, _tableHits, millis(),
+                             nodesPerSecond());
+    }
+
+}
@@ -0,0 +1,501 @@
+package qirkat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static qirkat.Move.MAX_INDEX;
+import static qirkat.Move.packedIsJump;
+import static qirkat.PieceColor.BLACK;
+import static qirkat.PieceColor.WHITE;
+
+/** The values of all positions with few pieces, found in advance by
+ *  retrograde analysis (see build) and kept in a file that is
+ *  memory-mapped when it is opened.
+ *
+ *  A position is identified by the squares of its white pieces, those of
+ *  its black pieces, and the side to move.  The restrictions on sideways
+ *  moves depend on earlier moves rather than on the position, and would
+ *  multiply the number of positions many times over, so they are left
+ *  out: values are those of the game without them, and probe refuses
+ *  boards on which one is in force (see Board.sidewaysRestricted).
+ *  They are only estimates of values in the real game, since the
+ *  restrictions come into force during play from any position: there,
+ *  positions drawn without them are won or lost, and sometimes even the
+ *  other side wins.  AIs therefore use them only as static values.
+ *
+ *  The positions with W white and B black pieces (W, B &gt; 0) form a
+ *  table, in which the position is numbered from the combinatorial ranks
+ *  (see rank) of its white squares among all squares and of its black
+ *  squares among those left, times two, plus one if black is to move.
+ *  The file holds MAGIC, the largest number of pieces covered, and a
+ *  byte for each position of each table, in order of increasing total
+ *  number of pieces and then of W.  Each byte is 0 for a draw, D &gt; 0
+ *  if the side to move wins in D moves, and -D-1 if it loses in D
+ *  moves, with both sides playing for the quickest win or slowest loss.
+ *
+ *  To build a tablebase, use
+ *  <pre>
+ *      java qirkat.Tablebase FILE [--pieces=N]
+ *  </pre>
+ *  which solves all positions with at most N pieces (default
+ *  DEFAULT_PIECES).
+ *  @author Santhosh Subramanian
+ */
+public class Tablebase {
+
+    /** Identifies a tablebase file. */
+    static final int MAGIC = 0x51544231;
+    /** Default largest number of pieces covered by a tablebase. */
+    static final int DEFAULT_PIECES = 6;
+    /** Largest number of pieces that a tablebase may cover. */
+    static final int MAX_PIECES = 8;
+    /** Returned by probe for a position I do not cover. */
+    static final int UNKNOWN = Integer.MIN_VALUE;
+    /** Largest distance to a win or loss that a byte can record. */
+    private static final int MAX_DISTANCE = Byte.MAX_VALUE - 1;
+    /** Size in bytes of the header. */
+    private static final int HEADER_BYTES = 8;
+    /** Number of squares. */
+    private static final int SQUARES = MAX_INDEX + 1;
+    /** BINOMIAL[N][K] is N choose K. */
+    private static final int[][] BINOMIAL =
+        new int[SQUARES + 1][MAX_PIECES + 1];
+
+    static {
+        for (int n = 0; n <= SQUARES; n += 1) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= MAX_PIECES && k <= n; k += 1) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1]
+                    + (k < n ? BINOMIAL[n - 1][k] : 0);
+            }
+        }
+    }
+
+    /** The mapped file. */
+    private final ByteBuffer _values;
+    /** Largest number of pieces I cover. */
+    private final int _pieces;
+    /** _offsets[W][B] is the position in _values of the table of
+     *  positions with W white and B black pieces. */
+    private final long[][] _offsets;
+
+    /** The tablebase in the file FILE, which is mapped into memory.
+     *  Throws IOException if FILE cannot be read or is not a
+     *  tablebase. */
+    Tablebase(Path file) throws IOException {
+        try (FileChannel channel =
+                 FileChannel.open(file, StandardOpenOption.READ)) {
+            _values = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                  channel.size());
+        }
+        if (_values.limit() < HEADER_BYTES || _values.getInt(0) != MAGIC
+            || _values.getInt(4) < 2 || _values.getInt(4) > MAX_PIECES) {
+            throw new IOException("not a tablebase: " + file);
+        }
+        _pieces = _values.getInt(4);
+        _offsets = new long[_pieces][_pieces];
+        if (layout(_pieces, _offsets) != _values.limit()) {
+            throw new IOException("truncated tablebase: " + file);
+        }
+    }
+
+    /** Return the largest number of pieces I cover. */
+    int pieces() {
+        return _pieces;
+    }
+
+    /** Return the value to the side to move of BOARD as described in
+     *  the comment on Tablebase, or UNKNOWN if I do not cover it: that
+     *  is, if it has too many pieces or a restriction on sideways moves
+     *  is in force.  A player with no pieces has lost. */
+    int probe(Board board) {
+        if (board.sidewaysRestricted()) {
+            return UNKNOWN;
+        }
+        return probe(board.pieces(WHITE), board.pieces(BLACK),
+                     board.whoseMove());
+    }
+
+    /** Return the value to TOMOVE of the position with white pieces on
+     *  the squares in WHITE and black pieces on those in BLACK, without
+     *  restrictions on sideways moves, or UNKNOWN if it has more pieces
+     *  than I cover. */
+    int probe(int white, int black, PieceColor toMove) {
+        int w = Integer.bitCount(white), b = Integer.bitCount(black);
+        if ((toMove == WHITE ? w : b) == 0) {
+            return -1;
+        } else if (w + b > _pieces) {
+            return UNKNOWN;
+        } else if (w == 0 || b == 0) {
+            return UNKNOWN;
+        }
+        return _values.get((int) (_offsets[w][b]
+                                  + index(white, black, toMove)));
+    }
+
+    /** Return the rank of MASK, a set of K squares, among all sets of K
+     *  squares taken in colexicographic order: the sum, over the Ith
+     *  lowest member S of MASK (numbered from 0), of S choose I + 1. */
+    static int rank(int mask) {
+        int result = 0;
+        for (int i = 1; mask != 0; i += 1, mask &= mask - 1) {
+            result += BINOMIAL[Integer.numberOfTrailingZeros(mask)][i];
+        }
+        return result;
+    }
+
+    /** Return the set of K squares whose rank is RANK (see rank). */
+    static int unrank(int rank, int k) {
+        int result = 0;
+        for (int s = SQUARES - 1; k > 0; s -= 1) {
+            if (BINOMIAL[s][k] <= rank) {
+                rank -= BINOMIAL[s][k];
+                result |= 1 << s;
+                k -= 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of the position with pieces WHITE and BLACK and
+     *  TOMOVE to move within its table. */
+    private static long index(int white, int black, PieceColor toMove) {
+        int b = Integer.bitCount(black);
+        return ((long) rank(white) * BINOMIAL[SQUARES
+                                              - Integer.bitCount(white)][b]
+                + rank(squeeze(black, white))) * 2
+            + (toMove == WHITE ? 0 : 1);
+    }
+
+    /** Return MASK, which does not overlap HOLES, with the squares of
+     *  HOLES removed and the squares above each closed up. */
+    private static int squeeze(int mask, int holes) {
+        int result = 0;
+        for (; mask != 0; mask &= mask - 1) {
+            int s = Integer.numberOfTrailingZeros(mask);
+            result |= 1 << (s - Integer.bitCount(holes & ((1 << s) - 1)));
+        }
+        return result;
+    }
+
+    /** Return MASK with the squares of HOLES inserted (the inverse of
+     *  squeeze). */
+    private static int expand(int mask, int holes) {
+        int result = 0;
+        for (int s = 0, t = 0; mask >>> t != 0; s += 1) {
+            if ((holes & (1 << s)) == 0) {
+                result |= (mask >>> t & 1) << s;
+                t += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of positions with W white and B black pieces. */
+    private static long tableSize(int w, int b) {
+        return (long) BINOMIAL[SQUARES][w] * BINOMIAL[SQUARES - w][b] * 2;
+    }
+
+    /** Fill OFFSETS[W][B] with the positions in a file covering up to
+     *  PIECES pieces of the tables with W white and B black pieces, and
+     *  return the size of the file. */
+    private static long layout(int pieces, long[][] offsets) {
+        long size = HEADER_BYTES;
+        for (int total = 2; total <= pieces; total += 1) {
+            for (int w = 1; w < total; w += 1) {
+                offsets[w][total - w] = size;
+                size += tableSize(w, total - w);
+            }
+        }
+        return size;
+    }
+
+    /** Write to FILE a tablebase of all positions with at most PIECES
+     *  pieces, and return the number of positions in it that are not
+     *  drawn. */
+    static long build(Path file, int pieces) throws IOException {
+        if (pieces < 2 || pieces > MAX_PIECES) {
+            throw new IllegalArgumentException("bad number of pieces");
+        }
+        long[][] offsets = new long[pieces][pieces];
+        long size = layout(pieces, offsets);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("tablebase too large");
+        }
+        byte[] values = new byte[(int) size];
+        long decided = 0;
+        for (int total = 2; total <= pieces; total += 1) {
+            for (int w = 1; w < total; w += 1) {
+                decided += new Solver(values, offsets, w, total - w).solve();
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                     new FileOutputStream(file.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(pieces);
+            out.write(values, HEADER_BYTES, values.length - HEADER_BYTES);
+        }
+        return decided;
+    }
+
+    /** Solves the table of positions with a given number of white and
+     *  black pieces, given the solutions of all tables with fewer
+     *  pieces.  Captures lead to those smaller tables, so positions with
+     *  a capture are solved at once from their successors.  The rest are
+     *  solved backwards from the decided positions in order of distance:
+     *  a position is won as soon as one of its successors is found lost,
+     *  and lost once all of its successors have been found won. */
+    private static class Solver {
+
+        /** Marks a position of mine that is decided in _unsolved. */
+        private static final byte DECIDED = -1;
+
+        /** A solver for the table of positions with W white and B black
+         *  pieces, recording values in VALUES, whose tables start at
+         *  OFFSETS (see layout). */
+        Solver(byte[] values, long[][] offsets, int w, int b) {
+            _values = values;
+            _offsets = offsets;
+            _w = w;
+            _b = b;
+            _base = (int) offsets[w][b];
+            _size = (int) tableSize(w, b);
+            _unsolved = new byte[_size];
+            _blackRanks = BINOMIAL[SQUARES - w][b];
+        }
+
+        /** Solve my table and return the number of its positions that are
+         *  not drawn. */
+        long solve() {
+            Board board = new Board();
+            board.setSilent(true);
+            Board.MoveList moves = new Board.MoveList();
+            for (int n = 0; n < _size; n += 1) {
+                int white = white(n), black = black(n, white);
+                PieceColor toMove = toMove(n);
+                board.setPieces(white, black, toMove);
+                moves.clear();
+                board.getMoves(moves);
+                if (moves.size() == 0) {
+                    decide(n, -1);
+                } else if (!packedIsJump(moves.get(0))) {
+                    _unsolved[n] = (byte) moves.size();
+                } else {
+                    _unsolved[n] = DECIDED;
+                    _values[_base + n] = (byte) best(board, moves);
+                    if (_values[_base + n] != 0) {
+                        schedule(n);
+                    }
+                }
+            }
+            long decided = 0;
+            for (int d = 0; d < _pending.length; d += 1) {
+                for (int i = 0; i < _pendingSize[d]; i += 1) {
+                    retract(_pending[d][i]);
+                    decided += 1;
+                }
+                _pending[d] = null;
+            }
+            return decided;
+        }
+
+        /** Return the value of the position on BOARD, whose moves MOVES
+         *  all lead to smaller tables. */
+        private int best(Board board, Board.MoveList moves) {
+            int result = 0;
+            for (int i = 0; i < moves.size(); i += 1) {
+                board.makeMove(moves.get(i));
+                int value = negate(value(board.pieces(WHITE),
+                                         board.pieces(BLACK),
+                                         board.whoseMove()));
+                board.undo();
+                if (i == 0 || preference(value) > preference(result)) {
+                    result = value;
+                }
+            }
+            return result;
+        }
+
+        /** Return the value of the position with pieces WHITE and BLACK
+         *  and TOMOVE to move, which has fewer pieces than my
+         *  positions. */
+        private int value(int white, int black, PieceColor toMove) {
+            if ((toMove == WHITE ? white : black) == 0) {
+                return -1;
+            }
+            int w = Integer.bitCount(white), b = Integer.bitCount(black);
+            return _values[(int) (_offsets[w][b]
+                                  + index(white, black, toMove))];
+        }
+
+        /** Record that position #N, which is undecided, has value VALUE
+         *  and schedule it for retraction. */
+        private void decide(int n, int value) {
+            _unsolved[n] = DECIDED;
+            _values[_base + n] = (byte) value;
+            schedule(n);
+        }
+
+        /** Schedule position #N, which is decided, for retraction in
+         *  order of distance. */
+        private void schedule(int n) {
+            int d = distance(_values[_base + n]);
+            if (d > MAX_DISTANCE) {
+                throw new IllegalStateException("distance too large");
+            }
+            if (_pending[d] == null) {
+                _pending[d] = new int[16];
+            } else if (_pendingSize[d] == _pending[d].length) {
+                _pending[d] = Arrays.copyOf(_pending[d], 2 * _pendingSize[d]);
+            }
+            _pending[d][_pendingSize[d]] = n;
+            _pendingSize[d] += 1;
+        }
+
+        /** Decide those positions of mine from which position #N, which
+         *  is decided, can be reached by a step and that are thereby
+         *  decided. */
+        private void retract(int n) {
+            int white = white(n), black = black(n, white);
+            PieceColor mover = toMove(n).opposite();
+            int reply = _values[_base + n];
+            int mine = mover == WHITE ? white : black;
+            int empty = ~(white | black) & Board.ALL_SQUARES;
+            for (int to = mine; to != 0; to &= to - 1) {
+                int k = Integer.numberOfTrailingZeros(to);
+                for (int from = Board.stepSources(mover, k) & empty;
+                     from != 0; from &= from - 1) {
+                    int moved = (1 << k) ^ Integer.lowestOneBit(from);
+                    int p = mover == WHITE
+                        ? (int) index(white ^ moved, black, mover)
+                        : (int) index(white, black ^ moved, mover);
+                    if (_unsolved[p] == DECIDED) {
+                        continue;
+                    } else if (reply < 0) {
+                        decide(p, negate(reply));
+                    } else {
+                        _unsolved[p] -= 1;
+                        if (_unsolved[p] == 0) {
+                            decide(p, negate(reply));
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Return the white squares of position #N. */
+        private int white(int n) {
+            return unrank(n / 2 / _blackRanks, _w);
+        }
+
+        /** Return the black squares of position #N, whose white squares
+         *  are WHITE. */
+        private int black(int n, int white) {
+            return expand(unrank(n / 2 % _blackRanks, _b), white);
+        }
+
+        /** Return the side to move in position #N. */
+        private PieceColor toMove(int n) {
+            return n % 2 == 0 ? WHITE : BLACK;
+        }
+
+        /** The values of all tables. */
+        private final byte[] _values;
+        /** The positions of the tables in _values. */
+        private final long[][] _offsets;
+        /** Numbers of white and black pieces in my positions. */
+        private final int _w, _b;
+        /** Position of my table in _values and its size. */
+        private final int _base, _size;
+        /** Number of ways of placing my black pieces around my white
+         *  ones. */
+        private final int _blackRanks;
+        /** For each of my positions, DECIDED if its value is known, and
+         *  otherwise the number of its moves that have not been found to
+         *  lead to a win for the opponent. */
+        private final byte[] _unsolved;
+        /** _pending[D] lists the first _pendingSize[D] decided positions
+         *  at distance D from the end of the game. */
+        private final int[][] _pending = new int[MAX_DISTANCE + 1][];
+        /** Sizes of the lists in _pending. */
+        private final int[] _pendingSize = new int[MAX_DISTANCE + 1];
+    }
+
+    /** Return the value to the side to move of a position from which
+     *  there is a move to a position whose value to the side to move is
+     *  VALUE, if that move is the best. */
+    static int negate(int value) {
+        if (value == 0) {
+            return 0;
+        } else if (value < 0) {
+            return -value;
+        } else {
+            return -value - 2;
+        }
+    }
+
+    /** Return a number that is larger for better values (to the side
+     *  to move) VALUE: quicker wins, then draws, then slower losses. */
+    static int preference(int value) {
+        if (value > 0) {
+            return 2 * MAX_DISTANCE - value;
+        } else if (value < 0) {
+            return -2 * MAX_DISTANCE - value;
+        } else {
+            return 0;
+        }
+    }
+
+    /** Return the number of moves to the end of the game from a position
+     *  of value VALUE, which is not a draw. */
+    static int distance(int value) {
+        return value > 0 ? value : -value - 1;
+    }
+
+    /** Build a tablebase as described by ARGS (see Tablebase). */
+    public static void main(String[] args) {
+        int pieces = DEFAULT_PIECES;
+        Path file = null;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--pieces=")) {
+                    pieces = Integer.parseInt(arg.substring(9));
+                } else if (arg.startsWith("--") || file != null) {
+                    usage();
+                } else {
+                    file = Paths.get(arg);
+                }
+            }
+        } catch (IllegalArgumentException excp) {
+            usage();
+        }
+        if (file == null || pieces < 2 || pieces > MAX_PIECES) {
+            usage();
+        }
+        try {
+            System.out.printf("%d decided positions%n", build(file, pieces));
+        } catch (IOException excp) {
+            System.err.printf("Could not write %s: %s%n", file,
+                              excp.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /** Give usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java qirkat.Tablebase FILE"
+                           + " [--pieces=N]");
+        System.exit(1);
+    }
+
+}
@@ -0,0 +1,164 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static qirkat.PieceColor.*;
+
+/** Tests of the Tablebase class.
+ *  @author Santhosh Subramanian
+ */
+public class TablebaseTest {
+
+    /** A tablebase of all positions with at most three pieces, built by
+     *  the first test to need it. */
+    private static Tablebase tablebase;
+
+    /** Return tablebase, building it if necessary. */
+    private static Tablebase tablebase() throws IOException {
+        if (tablebase == null) {
+            File file = File.createTempFile("tablebase", ".bin");
+            file.deleteOnExit();
+            Path path = file.toPath();
+            Tablebase.build(path, 3);
+            tablebase = new Tablebase(path);
+        }
+        return tablebase;
+    }
+
+    @Test
+    public void testRank() {
+        for (int r = 0; r < 300; r += 1) {
+            int mask = Tablebase.unrank(r, 2);
+            assertEquals(2, Integer.bitCount(mask));
+            assertEquals(r, Tablebase.rank(mask));
+        }
+        assertEquals(0x1000003, Tablebase.unrank(Tablebase.rank(0x1000003),
+                                                 3));
+    }
+
+    /** Check that every position with one piece against two has the
+     *  value of the best of its moves. */
+    @Test
+    public void testConsistent() throws IOException {
+        tablebase();
+        Board b = new Board();
+        for (int r0 = 0; r0 < 25; r0 += 1) {
+            for (int r1 = 0; r1 < 300; r1 += 1) {
+                int one = Tablebase.unrank(r0, 1);
+                int two = Tablebase.unrank(r1, 2);
+                if ((one & two) != 0) {
+                    continue;
+                }
+                for (PieceColor next : new PieceColor[] { WHITE, BLACK }) {
+                    checkConsistent(b, one, two, next);
+                    checkConsistent(b, two, one, next);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testProbe() throws IOException {
+        assertEquals(3, tablebase().pieces());
+        Board b = new Board();
+        b.setPieces("-----  -----  --w--  --b--  -----", WHITE);
+        assertEquals(1, tablebase.probe(b));
+        b.setPieces("-----  -----  --w--  --b--  -----", BLACK);
+        assertEquals(1, tablebase.probe(b));
+        b.setPieces("-----  -----  --w--  --b--  b-b-b", WHITE);
+        assertEquals(Tablebase.UNKNOWN, tablebase.probe(b));
+
+        b.setPieces("-----  -----  --w--  -----  b---b", WHITE);
+        assertTrue(tablebase.probe(b) != Tablebase.UNKNOWN);
+        b.makeMove(Move.parseMove("c3-d3"));
+        assertTrue(b.sidewaysRestricted());
+        assertEquals(Tablebase.UNKNOWN, tablebase.probe(b));
+    }
+
+    /** The tablebase ignores the restrictions on sideways moves, so in
+     *  this position it prefers c1-b1, which wins without them but loses
+     *  with them.  An AI must use it only as an estimate and find the
+     *  real win. */
+    @Test
+    public void testAIUsesTablebase() throws IOException {
+        Game game = new Game(new Board(),
+                             new ReaderSource(new StringReader(""), false),
+                             new TextReporter());
+        game.setTablebase(tablebase());
+        Board b = game.getBoard();
+        b.setPieces("--w--  b----  -----  -----  -w---", WHITE);
+        assertEquals(3, tablebase.probe(b));
+        HashMap<Long, Integer> values = new HashMap<>();
+        assertEquals(3, solve(b, values));
+        b.makeMove(Move.parseMove("c1-b1"));
+        assertEquals(3, Tablebase.negate(
+                         tablebase.probe(b.pieces(WHITE), b.pieces(BLACK),
+                                         b.whoseMove())));
+        assertTrue(solve(b, values) > 0);
+        b.undo();
+
+        AI ai = new AI(game, WHITE);
+        Move mov = ai.findMove(8, 0);
+        b.makeMove(mov);
+        assertEquals(3, Tablebase.negate(solve(b, values)));
+    }
+
+    /** Return the value of the position on B in the real game (with the
+     *  restrictions on sideways moves), encoded as in Tablebase, by
+     *  searching all of its moves, and recording the values of the
+     *  positions searched in VALUES by key.  A position met again while
+     *  it is being searched counts as a draw. */
+    private static int solve(Board b, HashMap<Long, Integer> values) {
+        Integer known = values.get(b.key());
+        if (known != null) {
+            return known;
+        }
+        values.put(b.key(), 0);
+        ArrayList<Move> moves = b.getMoves();
+        int best = -1;
+        for (int i = 0; i < moves.size(); i += 1) {
+            b.makeMove(moves.get(i));
+            int value = Tablebase.negate(solve(b, values));
+            b.undo();
+            if (i == 0 || Tablebase.preference(value)
+                > Tablebase.preference(best)) {
+                best = value;
+            }
+        }
+        values.put(b.key(), best);
+        return best;
+    }
+
+    /** Check that the position with pieces WHITE and BLACK and NEXT to
+     *  move has the value in tablebase of its best move, using B. */
+    private void checkConsistent(Board b, int white, int black,
+                                 PieceColor next) {
+        b.setPieces(white, black, next);
+        int value = tablebase.probe(white, black, next);
+        Board.MoveList moves = new Board.MoveList();
+        b.getMoves(moves);
+        if (moves.size() == 0) {
+            assertEquals(-1, value);
+            return;
+        }
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i += 1) {
+            b.makeMove(moves.get(i));
+            int reply = Tablebase.negate(
+                tablebase.probe(b.pieces(WHITE), b.pieces(BLACK),
+                                b.whoseMove()));
+            b.undo();
+            best = Math.max(best, Tablebase.preference(reply));
+        }
+        assertEquals(best, Tablebase.preference(value));
+    }
+
+}
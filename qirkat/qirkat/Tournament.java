@@ -0,0 +1,350 @@
+package qirkat;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static qirkat.PieceColor.*;
+
+/** Self-play between two AI configurations, without a user interface.
+ *  Usage:
+ *  <pre>
+ *      java qirkat.Tournament [--games=N] [--parallel=N] [--seed=S]
+ *                             [--tt=MEGABYTES] A B
+ *  </pre>
+ *  plays N games (default DEFAULT_GAMES) between entrants A and B, N at
+ *  a time in parallel (default, one per processor), and reports A's
+ *  wins, draws, and losses, its Elo rating relative to B with a 95%
+ *  confidence interval, and the time taken by games and moves.  Each
+ *  entrant is described by comma-separated settings "depth=D"
+ *  (maximum search depth), "time=MSEC" (time per move, which must be
+ *  positive), and "weights=FILE" (see WeightedEvaluator.read).
+ *
+ *  Each game starts with OPENING_PLIES random moves chosen with a seed
+ *  (set as by the "seed" command) derived from S, so that games differ.
+ *  Games come in pairs from the same opening, with A playing white in
+ *  one and black in the other.  A game still going after MAX_PLIES
+ *  moves is a draw.
+ *  @author Santhosh Subramanian
+ */
+public class Tournament {
+
+    /** Default number of games. */
+    static final int DEFAULT_GAMES = 100;
+    /** Default size of each AI's transposition table, in megabytes. */
+    static final int DEFAULT_TABLE_MEGABYTES = 4;
+    /** Number of random moves that open each game. */
+    static final int OPENING_PLIES = 4;
+    /** Number of moves after which a game is drawn. */
+    static final int MAX_PLIES = 400;
+    /** Multiple of the standard error giving a 95% confidence
+     *  interval. */
+    private static final double Z95 = 1.96;
+
+    /** A Reporter that discards all messages. */
+    private static final Reporter QUIET = new Reporter() {
+        @Override
+        public void errMsg(String format, Object... args) {
+        }
+
+        @Override
+        public void outcomeMsg(String format, Object... args) {
+        }
+
+        @Override
+        public void moveMsg(String format, Object... args) {
+        }
+    };
+
+    /** Entrants A and B. */
+    private final Entrant[] _entrants;
+    /** Size of each AI's transposition table, in megabytes. */
+    private final int _tableMegabytes;
+
+    /** The settings of one side of a tournament. */
+    static class Entrant {
+        /** Maximum search depth. */
+        private int _depth = 64;
+        /** Time allowed per move (msec), or 0 if only _depth limits
+         *  the search. */
+        private long _timeLimit = Game.DEFAULT_TIME_LIMIT;
+        /** Static evaluation. */
+        private Evaluator _evaluator = new WeightedEvaluator();
+        /** Description of my settings. */
+        private String _spec;
+
+        /** An entrant searching up to DEPTH levels and LIMIT msec per
+         *  move (0 for no limit, which DEPTH must keep small), with the
+         *  default evaluation. */
+        Entrant(int depth, long limit) {
+            _depth = depth;
+            _timeLimit = limit;
+            _spec = String.format("depth=%d,time=%d", depth, limit);
+        }
+
+        /** An entrant with the settings described by SPEC (see
+         *  Tournament).  Throws IllegalArgumentException if SPEC is
+         *  malformed. */
+        Entrant(String spec) throws IOException {
+            _spec = spec;
+            for (String setting : spec.split(",")) {
+                String[] parts = setting.split("=", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("bad setting: "
+                                                       + setting);
+                }
+                switch (parts[0]) {
+                case "depth":
+                    _depth = Integer.parseInt(parts[1]);
+                    break;
+                case "time":
+                    _timeLimit = Long.parseLong(parts[1]);
+                    break;
+                case "weights":
+                    try (FileReader input = new FileReader(parts[1])) {
+                        _evaluator = WeightedEvaluator.read(input);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("bad setting: "
+                                                       + setting);
+                }
+            }
+            if (_depth < 1 || _timeLimit < 1) {
+                throw new IllegalArgumentException("bad entrant: " + spec);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return _spec;
+        }
+    }
+
+    /** The outcome of one game. */
+    static class Record {
+        /** 1, 0.5, or 0 as entrant A won, drew, or lost. */
+        private double _score;
+        /** Number of moves played. */
+        private int _plies;
+        /** Time taken by the game (nsec). */
+        private long _time;
+        /** Number of moves searched by entrants A and B. */
+        private final int[] _moves = new int[2];
+        /** Total and maximum times of the searches of entrants A and B
+         *  (nsec). */
+        private final long[] _moveTime = new long[2],
+            _maxMoveTime = new long[2];
+    }
+
+    /** A tournament between entrants A and B, whose AIs have
+     *  transposition tables of about TABLEMEGABYTES megabytes. */
+    Tournament(Entrant a, Entrant b, int tableMegabytes) {
+        _entrants = new Entrant[] { a, b };
+        _tableMegabytes = tableMegabytes;
+    }
+
+    /** Play a game starting from a random opening determined by SEED,
+     *  in which entrant A plays white iff AISWHITE, and return its
+     *  outcome. */
+    Record play(long seed, boolean aIsWhite) {
+        Record record = new Record();
+        long start = System.nanoTime();
+        Game[] games = new Game[2];
+        AI[] ais = new AI[2];
+        for (int i = 0; i < 2; i += 1) {
+            games[i] = new Game(new Board(),
+                                new ReaderSource(new StringReader(""),
+                                                 false),
+                                QUIET);
+            games[i].setTable(_tableMegabytes,
+                              TranspositionTable.Replacement.AGED);
+            games[i].setEvaluator(_entrants[i]._evaluator);
+            ais[i] = new AI(games[i], (i == 0) == aIsWhite ? WHITE : BLACK);
+        }
+        games[0].doSeed(new String[] { Long.toString(seed) });
+        Board board = games[0].getBoard();
+        ArrayList<Move> moves = board.getMoves();
+        while (!moves.isEmpty() && record._plies < MAX_PLIES) {
+            Move mov;
+            if (record._plies < OPENING_PLIES) {
+                mov = moves.get(games[0].nextRandom(moves.size()));
+            } else {
+                int side = (board.whoseMove() == WHITE) == aIsWhite ? 0 : 1;
+                long moveStart = System.nanoTime();
+                mov = ais[side].findMove(_entrants[side]._depth,
+                                         _entrants[side]._timeLimit);
+                long time = System.nanoTime() - moveStart;
+                record._moves[side] += 1;
+                record._moveTime[side] += time;
+                record._maxMoveTime[side] =
+                    Math.max(record._maxMoveTime[side], time);
+            }
+            for (Game game : games) {
+                game.getBoard().makeMove(mov);
+            }
+            record._plies += 1;
+            moves = board.getMoves();
+        }
+        if (!moves.isEmpty()) {
+            record._score = 0.5;
+        } else if ((board.whoseMove() == WHITE) != aIsWhite) {
+            record._score = 1;
+        }
+        record._time = System.nanoTime() - start;
+        return record;
+    }
+
+    /** Play GAMES games, PARALLEL at a time, with openings chosen from
+     *  SEED, report the results on OUT, and return entrant A's numbers of
+     *  wins, draws, and losses. */
+    int[] run(int games, int parallel, long seed, PrintStream out) {
+        ExecutorService pool = Executors.newFixedThreadPool(parallel);
+        ArrayList<Future<Record>> futures = new ArrayList<>();
+        for (int i = 0; i < games; i += 1) {
+            long gameSeed = seed + i / 2;
+            boolean aIsWhite = i % 2 == 0;
+            futures.add(pool.submit(() -> play(gameSeed, aIsWhite)));
+        }
+        ArrayList<Record> records = new ArrayList<>();
+        try {
+            for (Future<Record> future : futures) {
+                records.add(future.get());
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException("game failed", excp);
+        } finally {
+            pool.shutdownNow();
+        }
+        return report(records, out);
+    }
+
+    /** Report the outcomes of RECORDS on OUT, and return entrant A's
+     *  numbers of wins, draws, and losses. */
+    private int[] report(ArrayList<Record> records, PrintStream out) {
+        int[] wdl = new int[3];
+        long plies = 0, totalTime = 0, maxTime = 0;
+        int[] moves = new int[2];
+        long[] moveTime = new long[2], maxMoveTime = new long[2];
+        for (Record record : records) {
+            wdl[record._score == 1 ? 0 : record._score == 0 ? 2 : 1] += 1;
+            plies += record._plies;
+            totalTime += record._time;
+            maxTime = Math.max(maxTime, record._time);
+            for (int i = 0; i < 2; i += 1) {
+                moves[i] += record._moves[i];
+                moveTime[i] += record._moveTime[i];
+                maxMoveTime[i] = Math.max(maxMoveTime[i],
+                                          record._maxMoveTime[i]);
+            }
+        }
+        int n = records.size();
+        double score = score(wdl);
+        double margin = Z95 * standardError(wdl);
+        out.printf("A: %s%nB: %s%n", _entrants[0], _entrants[1]);
+        out.printf("A: %d wins, %d draws, %d losses (score %.1f%%)%n",
+                   wdl[0], wdl[1], wdl[2], 100 * score);
+        out.printf("Elo of A relative to B: %+.1f "
+                   + "(95%% confidence: %+.1f to %+.1f)%n",
+                   elo(score), elo(score - margin), elo(score + margin));
+        out.printf("[%d games, avg %.1f moves, avg %d msec/game, "
+                   + "max %d msec]%n", n, (double) plies / Math.max(n, 1),
+                   totalTime / Math.max(n, 1) / 1_000_000,
+                   maxTime / 1_000_000);
+        for (int i = 0; i < 2; i += 1) {
+            out.printf("[%s: %d moves, avg %d msec/move, max %d msec]%n",
+                       i == 0 ? "A" : "B", moves[i],
+                       moveTime[i] / Math.max(moves[i], 1) / 1_000_000,
+                       maxMoveTime[i] / 1_000_000);
+        }
+        return wdl;
+    }
+
+    /** Return the fraction of the points available from the games
+     *  whose wins, draws, and losses are WDL. */
+    static double score(int[] wdl) {
+        int n = wdl[0] + wdl[1] + wdl[2];
+        return n == 0 ? 0.5 : (wdl[0] + 0.5 * wdl[1]) / n;
+    }
+
+    /** Return the standard error of score(WDL) as an estimate of the
+     *  expected score per game. */
+    static double standardError(int[] wdl) {
+        int n = wdl[0] + wdl[1] + wdl[2];
+        if (n == 0) {
+            return 0;
+        }
+        double s = score(wdl);
+        double variance = (wdl[0] * (1 - s) * (1 - s)
+                           + wdl[1] * (0.5 - s) * (0.5 - s)
+                           + wdl[2] * s * s) / n;
+        return Math.sqrt(variance / n);
+    }
+
+    /** Return the difference in Elo rating corresponding to an expected
+     *  score per game of SCORE (infinite if SCORE is 0 or 1). */
+    static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        } else if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /** Run a tournament as described by ARGS (see Tournament). */
+    public static void main(String[] args) {
+        int games = DEFAULT_GAMES;
+        int parallel = Runtime.getRuntime().availableProcessors();
+        long seed = 0;
+        int tableMegabytes = DEFAULT_TABLE_MEGABYTES;
+        ArrayList<Entrant> entrants = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--games=")) {
+                    games = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--parallel=")) {
+                    parallel = Integer.parseInt(arg.substring(11));
+                } else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(arg.substring(7));
+                } else if (arg.startsWith("--tt=")) {
+                    tableMegabytes = Integer.parseInt(arg.substring(5));
+                } else if (arg.startsWith("--")) {
+                    usage();
+                } else {
+                    entrants.add(new Entrant(arg));
+                }
+            }
+        } catch (IllegalArgumentException excp) {
+            usage();
+        } catch (IOException excp) {
+            System.err.printf("Could not read weights: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+        if (entrants.size() != 2 || games < 1 || parallel < 1
+            || tableMegabytes < 0) {
+            usage();
+        }
+        new Tournament(entrants.get(0), entrants.get(1), tableMegabytes)
+            .run(games, parallel, seed, System.out);
+        System.exit(0);
+    }
+
+    /** Give usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java qirkat.Tournament [--games=N]"
+                           + " [--parallel=N] [--seed=S] [--tt=MEGABYTES]"
+                           + " A B");
+        System.err.println("  where A and B are comma-separated settings"
+                           + " depth=D,time=MSEC,weights=FILE");
+        System.exit(1);
+    }
+
+}
@@ -0,0 +1,56 @@
+package qirkat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the Tournament class.
+ *  @author Santhosh Subramanian
+ */
+public class TournamentTest {
+
+    @Test
+    public void testElo() {
+        assertEquals(0.0, Tournament.elo(0.5), 1e-9);
+        assertEquals(190.85, Tournament.elo(0.75), 0.01);
+        assertEquals(-190.85, Tournament.elo(0.25), 0.01);
+        assertEquals(Double.POSITIVE_INFINITY, Tournament.elo(1), 0);
+        int[] wdl = { 30, 40, 30 };
+        assertEquals(0.5, Tournament.score(wdl), 1e-9);
+        assertEquals(Math.sqrt(0.15 / 100), Tournament.standardError(wdl),
+                     1e-9);
+    }
+
+    @Test
+    public void testEntrant() throws IOException {
+        assertEquals("depth=3,time=100",
+                     new Tournament.Entrant("depth=3,time=100").toString());
+        for (String spec : new String[] { "depth=3,time=0", "depth=0",
+                                          "time=-1", "speed=3" }) {
+            try {
+                new Tournament.Entrant(spec);
+                fail("accepted " + spec);
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void testRun() {
+        Tournament.Entrant a = new Tournament.Entrant(2, 0),
+            b = new Tournament.Entrant(1, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] wdl = new Tournament(a, b, 1).run(4, 2, 61, new PrintStream(out));
+        assertEquals(4, wdl[0] + wdl[1] + wdl[2]);
+        assertTrue(out.toString().contains("Elo of A relative to B"));
+        assertArrayEquals(wdl,
+                          new Tournament(a, b, 1).run(4, 1, 61,
+                                                      new PrintStream(out)));
+    }
+
+}
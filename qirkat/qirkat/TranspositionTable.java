@@ -0,0 +1,220 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of search results, indexed by the Zobrist key of
+ * the position searched (see Board.key).  Each entry records the depth
+ * of the search, whether its score is exact or only a bound, the score,
+ * and the best move found.  The number of entries is a power of two, so
+ * that a key's slot is simply its low-order bits.
+ *
+ * A table may be shared by the threads of a parallel search without
+ * locking.  Each slot holds its key XORed with its data, so that a probe
+ * can detect (and ignore) a slot that another thread has only partly
+ * overwritten.  The recorded best moves are only hints, and the
+ * statistics are approximate when the table is shared.
+ *
+ * @author Santhosh Subramanian
+ */
+class TranspositionTable {
+
+    /** Kinds of score: the exact value of a position, or a lower or
+     *  upper bound on it (from a search that failed high or low). */
+    static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+    /** Policies for deciding whether a new entry displaces the entry
+     *  already in its slot. */
+    enum Replacement {
+        /** Always replace. */
+        ALWAYS,
+        /** Replace only by an entry searched at least as deeply, or for
+         *  the same position. */
+        DEPTH,
+        /** As for DEPTH, but entries left from earlier searches are
+         *  always replaced. */
+        AGED;
+    }
+
+    /** Default size of a table, in megabytes. */
+    static final int DEFAULT_MEGABYTES = 16;
+
+    /** Size of one entry in bytes: key, data, and packed move. */
+    private static final int ENTRY_BYTES = 24;
+
+    /** Bit positions and masks of the fields packed into _data.  The
+     *  score occupies the low 32 bits. */
+    private static final int
+        DEPTH_SHIFT = 32, BOUND_SHIFT = 40, AGE_SHIFT = 42,
+        DEPTH_MASK = 0xff, BOUND_MASK = 0x3, AGE_MASK = 0xff;
+    /** Marks a slot as in use. */
+    private static final long USED = 1L << 63;
+
+    /** Zobrist keys of the positions in each slot, XORed with the
+     *  corresponding element of _data. */
+    private final long[] _keys;
+    /** Packed depth, bound, age, and score of each slot. */
+    private final long[] _data;
+    /** Best move of each slot, packed (see Move.packed), or 0. */
+    private final long[] _moves;
+    /** Mask selecting a slot from a key. */
+    private final int _mask;
+    /** Replacement policy. */
+    private final Replacement _policy;
+    /** Current search generation (see newSearch). */
+    private int _age;
+    /** Number of slots in use. */
+    private int _used;
+    /** Statistics: numbers of probes, hits, collisions, and stores. */
+    private long _probes, _hits, _collisions, _stores;
+
+    /** A new table occupying about MEGABYTES megabytes and using POLICY
+     *  to replace entries. */
+    TranspositionTable(int megabytes, Replacement policy) {
+        long entries =
+            Math.max(1, (long) megabytes * (1 << 20) / ENTRY_BYTES);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        _keys = new long[size];
+        _data = new long[size];
+        _moves = new long[size];
+        _mask = size - 1;
+        _policy = policy;
+    }
+
+    /** A new table of DEFAULT_MEGABYTES, using depth-preferred
+     *  replacement with aging. */
+    TranspositionTable() {
+        this(DEFAULT_MEGABYTES, Replacement.AGED);
+    }
+
+    /** Return the number of entries I can hold. */
+    int size() {
+        return _keys.length;
+    }
+
+    /** Mark the start of a new search, so that the AGED policy can tell
+     *  current entries from stale ones. */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /** Remove all entries and reset the statistics. */
+    void clear() {
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_data, 0);
+        Arrays.fill(_moves, 0);
+        _probes = _hits = _collisions = _stores = 0;
+        _used = 0;
+    }
+
+    /** Return the entry for the position with Zobrist key KEY, or 0 if
+     *  there is none.  The parts of a non-zero entry are extracted by
+     *  depth, bound, and score. */
+    long probe(long key) {
+        int slot = (int) key & _mask;
+        long data = _data[slot];
+        _probes += 1;
+        if ((data & USED) == 0) {
+            return 0;
+        } else if ((_keys[slot] ^ data) != key) {
+            _collisions += 1;
+            return 0;
+        }
+        _hits += 1;
+        return data;
+    }
+
+    /** Return the search depth of ENTRY. */
+    int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the kind of score (EXACT, LOWER, or UPPER) of ENTRY. */
+    int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the score of ENTRY. */
+    int score(long entry) {
+        return (int) entry;
+    }
+
+    /** Return the packed best move recorded for the position with
+     *  Zobrist key KEY, or 0 if there is none.  When the table is shared,
+     *  the result may be a move from another position. */
+    long move(long key) {
+        int slot = (int) key & _mask;
+        if ((_keys[slot] ^ _data[slot]) != key) {
+            return 0;
+        }
+        return _moves[slot];
+    }
+
+    /** Record that a search of DEPTH levels from the position with
+     *  Zobrist key KEY produced SCORE, of kind BOUND (EXACT, LOWER, or
+     *  UPPER), with packed best move BEST (0 if none), if my replacement
+     *  policy allows. */
+    void store(long key, int depth, int bound, int score, long best) {
+        int slot = (int) key & _mask;
+        long old = _data[slot];
+        if ((old & USED) == 0) {
+            _used += 1;
+        } else if ((_keys[slot] ^ old) != key) {
+            int oldDepth = (int) (old >>> DEPTH_SHIFT) & DEPTH_MASK;
+            boolean stale = ((old >>> AGE_SHIFT) & AGE_MASK) != _age;
+            switch (_policy) {
+            case DEPTH:
+                if (depth < oldDepth) {
+                    return;
+                }
+                break;
+            case AGED:
+                if (depth < oldDepth && !stale) {
+                    return;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        long data = USED | ((long) _age << AGE_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT)
+            | (score & 0xffffffffL);
+        _stores += 1;
+        _keys[slot] = key ^ data;
+        _data[slot] = data;
+        _moves[slot] = best;
+    }
+
+    /** Return the number of probes since the last clear. */
+    long probes() {
+        return _probes;
+    }
+
+    /** Return the number of probes that found their position. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of probes that found another position in the
+     *  slot for theirs. */
+    long collisions() {
+        return _collisions;
+    }
+
+    /** Return the percentage of my slots in use. */
+    double fillPercent() {
+        return 100.0 * _used / size();
+    }
+
+    /** Return a one-line summary of my statistics. */
+    String stats() {
+        return String.format("TT: %d entries, %d probes, %d hits (%.1f%%), "
+                             + "%d collisions, %d stores, %.1f%% full",
+                             size(), _probes, _hits,
+                             _probes == 0 ? 0.0 : 100.0 * _hits / _probes,
+                             _collisions, _stores, fillPercent());
+    }
+
+}
@@ -0,0 +1,64 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.TranspositionTable.*;
+
+/** Tests of the TranspositionTable class.
+ *  @author Santhosh Subramanian
+ */
+public class TranspositionTableTest {
+
+    /** Two keys that share a slot in any table of fewer than 2**32 entries. */
+    private static final long KEY1 = 0x12345L << 32, KEY2 = 0x54321L << 32;
+
+    @Test
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(1, Replacement.AGED);
+        assertEquals(1, Integer.bitCount(table.size()));
+        assertEquals(0, table.probe(KEY1));
+        long mov = Move.parseMove("c2-c3").packed();
+        table.store(KEY1, 3, LOWER, -17, mov);
+        long entry = table.probe(KEY1);
+        assertTrue(entry != 0);
+        assertEquals(3, table.depth(entry));
+        assertEquals(LOWER, table.bound(entry));
+        assertEquals(-17, table.score(entry));
+        assertEquals(mov, table.move(KEY1));
+        assertEquals(0, table.probe(KEY2));
+        assertEquals(0, table.move(KEY2));
+        assertEquals(3, table.probes());
+        assertEquals(1, table.hits());
+        assertEquals(1, table.collisions());
+        table.clear();
+        assertEquals(0, table.probe(KEY1));
+    }
+
+    @Test
+    public void testReplacement() {
+        TranspositionTable depth =
+            new TranspositionTable(1, Replacement.DEPTH);
+        depth.store(KEY1, 4, EXACT, 1, 0);
+        depth.newSearch();
+        depth.store(KEY2, 2, EXACT, 2, 0);
+        assertTrue(depth.probe(KEY1) != 0);
+        assertEquals(0, depth.probe(KEY2));
+
+        TranspositionTable aged = new TranspositionTable(1, Replacement.AGED);
+        aged.store(KEY1, 4, EXACT, 1, 0);
+        aged.store(KEY2, 2, EXACT, 2, 0);
+        assertTrue(aged.probe(KEY1) != 0);
+        aged.newSearch();
+        aged.store(KEY2, 2, EXACT, 2, 0);
+        assertEquals(0, aged.probe(KEY1));
+        assertTrue(aged.probe(KEY2) != 0);
+
+        TranspositionTable always =
+            new TranspositionTable(1, Replacement.ALWAYS);
+        always.store(KEY1, 4, EXACT, 1, 0);
+        always.store(KEY2, 1, UPPER, 2, 0);
+        assertTrue(always.probe(KEY2) != 0);
+    }
+
+}
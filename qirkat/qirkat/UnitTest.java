@@ -15,7 +15,10 @@ public class UnitTest {
      */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(MoveTest.class, BoardTest.class,
-                CommandTest.class));
+                CommandTest.class, PerftTest.class,
+                TranspositionTableTest.class, AITest.class,
+                WeightedEvaluatorTest.class, TournamentTest.class,
+                OpeningBookTest.class, TablebaseTest.class));
     }
 
 }
@@ -0,0 +1,117 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import static qirkat.Board.ALL_SQUARES;
+
+/** An Evaluator that sums weighted differences between the two sides'
+ *  values of several terms:
+ *  <ul>
+ *  <li> material: the number of pieces;
+ *  <li> mobility: the number of non-capturing moves (see
+ *       Board.mobility);
+ *  <li> centre: the number of pieces on the nine central squares;
+ *  <li> backrank: the number of pieces still on their own first row,
+ *       which keep the opponent's pieces from reaching it;
+ *  <li> safety: minus the number of pieces that the opponent could
+ *       capture at once (see Board.threatened).
+ *  </ul>
+ *  Each term is computed from the board's piece masks with a fixed
+ *  number of operations, so a score takes constant time.
+ *
+ *  Weights may be read from a file (see read) for tuning.
+ *  @author Santhosh Subramanian
+ */
+class WeightedEvaluator implements Evaluator {
+
+    /** Names of the terms, in the order of their weights. */
+    static final String[] TERMS = {
+        "material", "mobility", "centre", "backrank", "safety"
+    };
+    /** Indices of the terms in TERMS. */
+    private static final int
+        MATERIAL = 0, MOBILITY = 1, CENTRE = 2, BACK_RANK = 3, SAFETY = 4;
+    /** Default weights of the terms. */
+    private static final int[] DEFAULT_WEIGHTS = { 100, 2, 4, 3, 10 };
+    /** The nine squares not on an edge of the board. */
+    private static final int CENTRE_SQUARES = 0x739c0;
+    /** The first rows of white and of black. */
+    private static final int
+        WHITE_BACK_RANK = 0x1f, BLACK_BACK_RANK = ALL_SQUARES & ~0xfffff;
+
+    /** The weights of my terms, in the order of TERMS. */
+    private final int[] _weights;
+
+    /** An evaluator with the default weights. */
+    WeightedEvaluator() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /** An evaluator whose terms have WEIGHTS, in the order of TERMS. */
+    WeightedEvaluator(int[] weights) {
+        if (weights.length != TERMS.length) {
+            throw new IllegalArgumentException("wrong number of weights");
+        }
+        _weights = weights.clone();
+    }
+
+    /** Return an evaluator whose weights are read from INPUT, which
+     *  contains lines of the form "TERM WEIGHT", where TERM is one of
+     *  TERMS and WEIGHT an integer.  Blank lines and lines starting with
+     *  '#' are ignored, and terms not mentioned have their default
+     *  weights.  Throws IllegalArgumentException if INPUT is not of this
+     *  form. */
+    static WeightedEvaluator read(Reader input) throws IOException {
+        int[] weights = DEFAULT_WEIGHTS.clone();
+        BufferedReader lines = new BufferedReader(input);
+        for (String line = lines.readLine(); line != null;
+             line = lines.readLine()) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            int term = Arrays.asList(TERMS).indexOf(fields[0]);
+            if (fields.length != 2 || term == -1) {
+                throw new IllegalArgumentException("bad weight: " + line);
+            }
+            weights[term] = Integer.parseInt(fields[1]);
+        }
+        return new WeightedEvaluator(weights);
+    }
+
+    /** Return the weight of TERM, one of TERMS. */
+    int weight(String term) {
+        return _weights[Arrays.asList(TERMS).indexOf(term)];
+    }
+
+    @Override
+    public int score(Board board) {
+        PieceColor me = board.whoseMove(), them = me.opposite();
+        int mine = board.pieces(me), theirs = board.pieces(them);
+        int myBackRank, theirBackRank;
+        if (me == PieceColor.WHITE) {
+            myBackRank = WHITE_BACK_RANK;
+            theirBackRank = BLACK_BACK_RANK;
+        } else {
+            myBackRank = BLACK_BACK_RANK;
+            theirBackRank = WHITE_BACK_RANK;
+        }
+        return _weights[MATERIAL]
+            * (Integer.bitCount(mine) - Integer.bitCount(theirs))
+            + _weights[MOBILITY]
+            * (board.mobility(me) - board.mobility(them))
+            + _weights[CENTRE]
+            * (Integer.bitCount(mine & CENTRE_SQUARES)
+               - Integer.bitCount(theirs & CENTRE_SQUARES))
+            + _weights[BACK_RANK]
+            * (Integer.bitCount(mine & myBackRank)
+               - Integer.bitCount(theirs & theirBackRank))
+            + _weights[SAFETY]
+            * (board.threatened(them) - board.threatened(me));
+    }
+
+}
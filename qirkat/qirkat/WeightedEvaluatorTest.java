@@ -0,0 +1,49 @@
+package qirkat;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static qirkat.PieceColor.*;
+
+/** Tests of the WeightedEvaluator class.
+ *  @author Santhosh Subramanian
+ */
+public class WeightedEvaluatorTest {
+
+    @Test
+    public void testScore() {
+        Evaluator eval = new WeightedEvaluator();
+        Board b = new Board();
+        assertEquals(0, eval.score(b));
+        b.setPieces("-------w----b----b-------", WHITE);
+        int white = eval.score(b);
+        b.setPieces("-------w----b----b-------", BLACK);
+        assertTrue(white < 0);
+        assertTrue(eval.score(b) > 0);
+        b.setPieces("-------w----bb---b-------", WHITE);
+        assertTrue(eval.score(b) < white);
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        WeightedEvaluator eval = WeightedEvaluator.read(
+            new StringReader("# tuned\n\nmaterial 120\n  safety  7\n"));
+        assertEquals(120, eval.weight("material"));
+        assertEquals(7, eval.weight("safety"));
+        assertEquals(new WeightedEvaluator().weight("centre"),
+                     eval.weight("centre"));
+        for (String bad : new String[] { "material", "speed 3",
+                                         "mobility x", "centre 1 2" }) {
+            try {
+                WeightedEvaluator.read(new StringReader(bad));
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+}
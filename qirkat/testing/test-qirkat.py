@@ -10,7 +10,7 @@ EOF = object()
 
 CLEANUP_TIME = 2
 DEFAULT_TOTAL_TIME = 120
-MOVE_FORMAT = '[a-g][1-7]-[a-g][1-7]'
+MOVE_FORMAT = '[a-g][1-7](?:-[a-g][1-7])+'
 WHITE_MOVE = re.compile(r'(?:((?:White|Black) wins|Draw)|White (passes)|White moves ('
                       + MOVE_FORMAT + '))\.$')
 BLACK_MOVE = re.compile(r'(?:((?:White|Black) wins|Draw)|Black (passes)|Black moves ('